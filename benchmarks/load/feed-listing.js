@@ -0,0 +1,34 @@
+// Нагрузочный тест чтения ленты: 5000 одновременных клиентов листают общую ленту и открывают публикации.
+// Запуск: k6 run -e BASE_URL=http://localhost:8081/api/v1/feed benchmarks/load/feed-listing.js
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8081/api/v1/feed';
+
+export const options = {
+    scenarios: {
+        readers: {
+            executor: 'constant-vus',
+            vus: Number(__ENV.VUS || 5000),
+            duration: __ENV.DURATION || '2m',
+        },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+    },
+};
+
+export default function () {
+    const page = http.get(`${BASE_URL}?limit=20&offset=${20 * Math.floor(Math.random() * 50)}`, {
+        tags: { name: 'list' },
+    });
+    check(page, { 'list 200': (r) => r.status === 200 });
+
+    const feeds = page.status === 200 ? page.json('currentValues') : [];
+    if (feeds.length > 0) {
+        const feed = feeds[Math.floor(Math.random() * feeds.length)];
+        const single = http.get(`${BASE_URL}/${feed.id}`, { tags: { name: 'get' } });
+        check(single, { 'get 200': (r) => r.status === 200 });
+    }
+}
@@ -0,0 +1,12 @@
+-- Тестовые данные для SearchBenchmark: 1M публикаций из синтетических слов w0..w4999.
+-- Частота слова падает с номером (w0 есть в большинстве публикаций, w4999 — в долях процента),
+-- чтобы в выдаче были и частые, и редкие термины. Накатывать на отдельную базу после миграций приложения.
+INSERT INTO feed (title, text, created)
+SELECT (SELECT string_agg('w' || floor(5000 * power(random(), 2))::int, ' ')
+        FROM generate_series(1, 6 + g % 2)),
+       (SELECT string_agg('w' || floor(5000 * power(random(), 2))::int, ' ')
+        FROM generate_series(1, 120 + g % 2)),
+       now() - g * interval '1 second'
+FROM generate_series(1, 1000000) g;
+
+ANALYZE feed;
@@ -0,0 +1,22 @@
+-- Тестовые данные для ListingBenchmark: 100k публикаций, 1M лайков, 300k избранного, 1M комментариев.
+-- Накатывать на базу после миграций приложения.
+INSERT INTO feed (title, text, created)
+SELECT 'title ' || g, repeat('text ', 200), now() - g * interval '1 minute'
+FROM generate_series(1, 100000) g;
+
+SELECT create_monthly_partitions('comment', now() - interval '100000 minutes', now());
+SELECT create_monthly_partitions('user_like', now() - interval '100000 minutes', now());
+
+INSERT INTO user_like (user_id, feed_id, feed_created)
+SELECT gen_random_uuid(), f.id, f.created FROM feed f, generate_series(1, 10);
+
+INSERT INTO user_star (user_id, feed_id, feed_created)
+SELECT gen_random_uuid(), f.id, f.created FROM feed f, generate_series(1, 3);
+
+INSERT INTO comment (text, user_id, feed_id, feed_created)
+SELECT 'comment ' || g, gen_random_uuid(), f.id, f.created FROM feed f, generate_series(1, 10) g;
+
+UPDATE feed f
+SET likes_count = 10, stars_count = 3, comments_count = 10;
+
+ANALYZE feed, comment, user_like, user_star;
@@ -0,0 +1,77 @@
+package ru.urfu.store.feed.repository;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.urfu.store.feed.model.UnlikeOutcome;
+import ru.urfu.store.feed.model.WriteOutcome;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лайк и снятие лайка на локальной базе: прежняя схема «проверка существования, затем запись»
+ * против одного запроса с проверкой существования внутри. Каждая операция идёт от нового
+ * пользователя, так что лайк всегда вставляет строку, а снятие — ничего не находит.
+ * Адрес базы задаётся так же, как для {@link ListingBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EngagementWriteBenchmark {
+
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    private FeedRepository feedRepository;
+    private UserStarRepository userStarRepository;
+    private UUID feedId;
+
+    @Setup
+    public void setUp() {
+        var dataSource = new DriverManagerDataSource(
+                System.getProperty("feed.bench.url", "jdbc:postgresql://localhost:6432/webstore"),
+                System.getProperty("feed.bench.user", "user"),
+                System.getProperty("feed.bench.password", "password")
+        );
+        jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        feedRepository = new FeedRepository(jdbcTemplate);
+        userStarRepository = new UserStarRepository(jdbcTemplate);
+        feedId = feedRepository.findAll(1, 0).getCurrentValues().getFirst().getId();
+    }
+
+    @Benchmark
+    public WriteOutcome checkThenLike() {
+        exists(feedId);
+        return feedRepository.like(feedId, UUID.randomUUID());
+    }
+
+    @Benchmark
+    public WriteOutcome like() {
+        return feedRepository.like(feedId, UUID.randomUUID());
+    }
+
+    @Benchmark
+    public UnlikeOutcome checkThenUnlike() {
+        var userId = UUID.randomUUID();
+        exists(feedId);
+        userStarRepository.unStar(userId, feedId);
+        return feedRepository.unlike(feedId, userId);
+    }
+
+    @Benchmark
+    public UnlikeOutcome unlike() {
+        return feedRepository.unlike(feedId, UUID.randomUUID());
+    }
+
+    /**
+     * Проверка, которую прежняя схема делала перед каждой записью.
+     */
+    private boolean exists(UUID id) {
+        var sql = "SELECT COUNT(*) FROM feed WHERE id = :id";
+        var count = jdbcTemplate.queryForObject(sql, new MapSqlParameterSource("id", id), Integer.class);
+        return count != null && count > 0;
+    }
+}
@@ -0,0 +1,54 @@
+package ru.urfu.store.feed.repository;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.urfu.store.feed.model.Feed;
+import ru.urfu.store.feed.model.dto.PageCursor;
+import ru.urfu.store.feed.model.dto.Paging;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Листинг ленты целиком через репозиторий на локальной базе, заполненной {@code seed.sql}.
+ * Адрес базы задаётся системными свойствами {@code feed.bench.url}, {@code feed.bench.user}
+ * и {@code feed.bench.password}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListingBenchmark {
+
+    @Param({"0", "10000"})
+    public int offset;
+
+    private FeedRepository feedRepository;
+    private PageCursor cursor;
+
+    @Setup
+    public void setUp() {
+        var dataSource = new DriverManagerDataSource(
+                System.getProperty("feed.bench.url", "jdbc:postgresql://localhost:6432/webstore"),
+                System.getProperty("feed.bench.user", "user"),
+                System.getProperty("feed.bench.password", "password")
+        );
+        feedRepository = new FeedRepository(new NamedParameterJdbcTemplate(dataSource));
+
+        var page = feedRepository.findAll(1, offset);
+        var last = page.getCurrentValues().getFirst();
+        cursor = new PageCursor(last.getCreated().toInstant(), last.getId());
+    }
+
+    @Benchmark
+    public Paging<Feed> offsetPage() {
+        return feedRepository.findAll(100, offset);
+    }
+
+    @Benchmark
+    public Paging<Feed> keysetPage() {
+        return feedRepository.findAllAfter(cursor, 100);
+    }
+}
@@ -0,0 +1,69 @@
+package ru.urfu.store.feed.repository;
+
+import org.openjdk.jmh.annotations.*;
+import ru.urfu.store.feed.model.Comment;
+import ru.urfu.store.feed.model.Feed;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость маппинга одной строки {@code feed} и {@code comment} в модель:
+ * Lombok-билдеры и преобразования {@code Timestamp}/{@code OffsetDateTime} → {@code ZonedDateTime}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RowMappingBenchmark {
+
+    private final FeedRepository feedRepository = new FeedRepository(null);
+    private final CommentRepository commentRepository = new CommentRepository(null);
+
+    private ResultSet feedRow;
+    private ResultSet commentRow;
+
+    @Setup
+    public void setUp() {
+        var now = OffsetDateTime.now();
+
+        var feed = new HashMap<String, Object>();
+        feed.put("id", UUID.randomUUID());
+        feed.put("title", "Заголовок новости");
+        feed.put("text", "Текст новости ".repeat(100));
+        feed.put("likes_count", 42L);
+        feed.put("stars_count", 7L);
+        feed.put("watch_count", 1000L);
+        feed.put("comments_count", 12L);
+        feed.put("version", 3L);
+        feed.put("created", now);
+        feed.put("updated", now);
+        feed.put("modified", now);
+        feedRow = StubResultSet.of(feed);
+
+        var comment = new HashMap<String, Object>();
+        comment.put("id", UUID.randomUUID());
+        comment.put("text", "Комментарий");
+        comment.put("user_id", UUID.randomUUID());
+        comment.put("feed_id", UUID.randomUUID());
+        comment.put("created", now);
+        comment.put("updated", null);
+        commentRow = StubResultSet.of(comment);
+    }
+
+    @Benchmark
+    public Feed feedRowWithCounts() throws SQLException {
+        return feedRepository.mapRowWithCounts(feedRow, 1);
+    }
+
+    @Benchmark
+    public Comment commentRow() throws SQLException {
+        return commentRepository.mapRow(commentRow, 1);
+    }
+}
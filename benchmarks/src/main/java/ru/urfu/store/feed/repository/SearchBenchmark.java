@@ -0,0 +1,53 @@
+package ru.urfu.store.feed.repository;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.urfu.store.feed.model.FeedSearchHit;
+import ru.urfu.store.feed.model.dto.Paging;
+import ru.urfu.store.feed.model.dto.SearchCursor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск на базе с миллионом публикаций из {@code search-seed.sql}: первая страница и следующая
+ * по курсору для редкого, среднего и составных запросов. Цель — меньше 50 мс на страницу.
+ * Адрес базы задаётся так же, как для {@link ListingBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    @Param({"w4900", "w2500", "w100 w4000", "w2500 or w3000"})
+    public String query;
+
+    private FeedSearchRepository feedSearchRepository;
+    private SearchCursor cursor;
+
+    @Setup
+    public void setUp() {
+        var dataSource = new DriverManagerDataSource(
+                System.getProperty("feed.bench.url", "jdbc:postgresql://localhost:6432/webstore"),
+                System.getProperty("feed.bench.user", "user"),
+                System.getProperty("feed.bench.password", "password")
+        );
+        feedSearchRepository = new FeedSearchRepository(new NamedParameterJdbcTemplate(dataSource));
+
+        var nextCursor = feedSearchRepository.search(query, null, 20).getNextCursor();
+        cursor = nextCursor != null ? SearchCursor.decode(nextCursor) : null;
+    }
+
+    @Benchmark
+    public Paging<FeedSearchHit> firstPage() {
+        return feedSearchRepository.search(query, null, 20);
+    }
+
+    @Benchmark
+    public Paging<FeedSearchHit> nextPage() {
+        return feedSearchRepository.search(query, cursor, 20);
+    }
+}
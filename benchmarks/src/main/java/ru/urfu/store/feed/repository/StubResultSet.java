@@ -0,0 +1,37 @@
+package ru.urfu.store.feed.repository;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.util.Map;
+
+/**
+ * {@link ResultSet} с одной строкой из заданных значений: позволяет мерить маппинг строк без базы.
+ * Поддерживает только методы, которые вызывают {@code FeedRepository.mapRowWithCounts}
+ * и {@code CommentRepository.mapRow}; остальные бросают {@link UnsupportedOperationException}.
+ * Вызов через {@link Proxy} сам стоит несколько наносекунд на столбец и входит в замер,
+ * поэтому результаты имеет смысл сравнивать между собой, а не с абсолютным временем маппинга.
+ */
+final class StubResultSet {
+
+    private StubResultSet() {
+    }
+
+    static ResultSet of(Map<String, Object> row) {
+        return (ResultSet) Proxy.newProxyInstance(
+                StubResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getObject" -> row.get((String) args[0]);
+                    case "getString" -> (String) row.get((String) args[0]);
+                    case "getLong" -> ((Number) row.get((String) args[0])).longValue();
+                    case "getTimestamp" -> {
+                        var value = (OffsetDateTime) row.get((String) args[0]);
+                        yield value != null ? Timestamp.from(value.toInstant()) : null;
+                    }
+                    case "getRow" -> 1;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,84 @@
+package ru.urfu.store.feed.service;
+
+import org.openjdk.jmh.annotations.*;
+import ru.urfu.store.feed.model.Feed;
+import ru.urfu.store.feed.model.dto.FeedDto;
+import ru.urfu.store.feed.model.dto.FeedSummaryDto;
+import ru.urfu.store.feed.model.dto.Paging;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Копирование модели в {@link FeedDto} и сериализация страницы из 100 публикаций в JSON:
+ * полной и в представлении {@code view=summary}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DtoBenchmark {
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    private Feed feed;
+    private Paging<FeedDto> page;
+    private Paging<FeedSummaryDto> summaryPage;
+
+    @Setup
+    public void setUp() {
+        feed = feed();
+        var dtos = IntStream.range(0, 100)
+                .mapToObj(i -> FeedService.mapToDto(feed()))
+                .toList();
+        page = new Paging<>(100_000L, 100, 0, dtos);
+        var summaries = IntStream.range(0, 100)
+                .mapToObj(i -> FeedService.mapToSummaryDto(summary(feed())))
+                .toList();
+        summaryPage = new Paging<>(100_000L, 100, 0, summaries);
+    }
+
+    @Benchmark
+    public FeedDto mapToDto() {
+        return FeedService.mapToDto(feed);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] serializePage() {
+        return jsonMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public byte[] serializeSummaryPage() {
+        return jsonMapper.writeValueAsBytes(summaryPage);
+    }
+
+    /**
+     * Как {@code FeedRepository} в представлении {@code SUMMARY}: в {@code text} только начало текста.
+     */
+    private static Feed summary(Feed feed) {
+        feed.setText(feed.getText().substring(0, 300));
+        return feed;
+    }
+
+    private static Feed feed() {
+        return Feed.builder()
+                .id(UUID.randomUUID())
+                .title("Заголовок новости")
+                .text("Текст новости ".repeat(100))
+                .likesCount(42L)
+                .starsCount(7L)
+                .watchCount(1000L)
+                .commentsCount(12L)
+                .created(ZonedDateTime.now())
+                .updated(ZonedDateTime.now())
+                .build();
+    }
+}
@@ -2,8 +2,10 @@ package ru.urfu.store.feed;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class StoreFeedServiceApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,34 @@
+package ru.urfu.store.feed.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Подменяет автоконфигурированные {@link JdbcTemplate} и {@link NamedParameterJdbcTemplate}
+ * на замеряемые (см. {@link TimedJdbcTemplate} и {@link TimedNamedParameterJdbcTemplate}).
+ */
+@Configuration
+public class JdbcMetricsConfiguration {
+
+    @Bean
+    public JdbcTemplate jdbcTemplate(
+            DataSource dataSource,
+            MeterRegistry meterRegistry,
+            @Value("${feed.sql.slow-threshold}") Duration slowThreshold,
+            @Value("${feed.sql.slow-params-sample-rate}") double slowParamsSampleRate
+    ) {
+        return new TimedJdbcTemplate(dataSource, meterRegistry, slowThreshold, slowParamsSampleRate);
+    }
+
+    @Bean
+    public NamedParameterJdbcTemplate namedParameterJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        return new TimedNamedParameterJdbcTemplate(jdbcTemplate);
+    }
+}
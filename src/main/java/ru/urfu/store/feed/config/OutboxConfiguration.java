@@ -0,0 +1,33 @@
+package ru.urfu.store.feed.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.urfu.store.feed.service.FileOutboxSink;
+import ru.urfu.store.feed.service.InMemoryOutboxSink;
+import ru.urfu.store.feed.service.OutboxSink;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.file.Path;
+
+/**
+ * Выбирает получателя журнала изменений по {@code feed.outbox.sink}: {@code memory} или {@code file}.
+ * Внешний брокер подключается отдельным бином {@link OutboxSink} с новым значением параметра.
+ */
+@Configuration
+public class OutboxConfiguration {
+
+    @Bean
+    public OutboxSink outboxSink(
+            @Value("${feed.outbox.sink}") String sink,
+            @Value("${feed.outbox.memory.capacity}") int capacity,
+            @Value("${feed.outbox.file.path}") Path path,
+            JsonMapper jsonMapper
+    ) {
+        return switch (sink) {
+            case "memory" -> new InMemoryOutboxSink(capacity);
+            case "file" -> new FileOutboxSink(path, jsonMapper);
+            default -> throw new IllegalArgumentException("Unknown feed.outbox.sink: " + sink);
+        };
+    }
+}
@@ -0,0 +1,80 @@
+package ru.urfu.store.feed.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * При {@code feed.replica.enabled=true} заменяет автоконфигурированный пул на два — основной базы
+ * ({@code spring.datasource}) и реплики ({@code feed.replica}) — и {@link ReplicaRoutingDataSource} над ними.
+ * Все шаблоны, транзакции и миграции работают через маршрутизатор и по умолчанию идут в основную базу;
+ * на реплику чтения отправляет {@link ru.urfu.store.feed.service.ReadRouting}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "feed.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfiguration {
+
+    @Bean
+    public HikariDataSource primaryDataSource(
+            @Value("${spring.datasource.url}") String url,
+            @Value("${spring.datasource.username}") String username,
+            @Value("${spring.datasource.password}") String password,
+            @Value("${spring.datasource.hikari.maximum-pool-size}") int poolSize,
+            @Value("${spring.datasource.hikari.connection-timeout}") long connectionTimeout
+    ) {
+        return pool("primary", url, username, password, poolSize, connectionTimeout);
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(
+            @Value("${feed.replica.url}") String url,
+            @Value("${feed.replica.username}") String username,
+            @Value("${feed.replica.password}") String password,
+            @Value("${feed.replica.pool-size}") int poolSize,
+            @Value("${spring.datasource.hikari.connection-timeout}") long connectionTimeout
+    ) {
+        var pool = pool("replica", url, username, password, poolSize, connectionTimeout);
+        pool.setReadOnly(true);
+        // Реплика может быть недоступна при старте: чтения тогда идут в основную базу.
+        pool.setInitializationFailTimeout(-1);
+        return pool;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(
+            @Qualifier("primaryDataSource") HikariDataSource primary,
+            @Qualifier("replicaDataSource") HikariDataSource replica
+    ) {
+        return new ReplicaRoutingDataSource(primary, replica);
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(
+            @Qualifier("replicaDataSource") HikariDataSource replica,
+            @Value("${feed.replica.max-lag}") Duration maxLag,
+            MeterRegistry meterRegistry
+    ) {
+        return new ReplicaLagMonitor(replica, maxLag, meterRegistry);
+    }
+
+    private static HikariDataSource pool(String name, String url, String username, String password,
+                                         int poolSize, long connectionTimeout) {
+        var pool = new HikariDataSource();
+        pool.setPoolName(name);
+        pool.setJdbcUrl(url);
+        pool.setUsername(username);
+        pool.setPassword(password);
+        pool.setMaximumPoolSize(poolSize);
+        pool.setConnectionTimeout(connectionTimeout);
+        return pool;
+    }
+}
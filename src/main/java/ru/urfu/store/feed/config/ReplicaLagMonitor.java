@@ -0,0 +1,76 @@
+package ru.urfu.store.feed.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Раз в {@code feed.replica.lag-check-interval} измеряет отставание реплики: время с последней применённой
+ * транзакции, если реплика получила от основной базы ещё не применённый WAL, иначе ноль.
+ * Если приём WAL не идёт ({@code pg_stat_wal_receiver.status} не {@code streaming}), отставание неизвестно:
+ * принятый WAL может быть давно применён, а новый просто не приходит. Статус виден только ролям
+ * с {@code pg_read_all_stats} (или {@code pg_monitor}); без них реплика всегда считается непригодной.
+ * Реплика считается пригодной для чтения, пока отставание не больше {@code feed.replica.max-lag};
+ * до первой удачной проверки и при ошибке — непригодной. Текущее значение — в метрике {@code feed.replica.lag}.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private static final String REPLICATION_LAG = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() THEN 0
+                WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') THEN NULL
+                WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp())
+            END
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration maxLag;
+
+    private volatile double lagSeconds = Double.NaN;
+    private volatile boolean healthy;
+
+    public ReplicaLagMonitor(DataSource replica, Duration maxLag, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = new JdbcTemplate(replica);
+        this.maxLag = maxLag;
+        Gauge.builder("feed.replica.lag", this, monitor -> monitor.lagSeconds)
+                .description("Replication lag of the read replica, NaN when unknown")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${feed.replica.lag-check-interval}")
+    public void check() {
+        Double lag;
+        try {
+            lag = jdbcTemplate.queryForObject(REPLICATION_LAG, Double.class);
+        } catch (DataAccessException e) {
+            log.debug("Replica lag check failed: {}", e.getMessage());
+            lag = null;
+        }
+
+        lagSeconds = lag != null ? lag : Double.NaN;
+        var nowHealthy = lag != null && lag <= maxLag.toMillis() / 1000.0;
+        if (nowHealthy != healthy) {
+            if (nowHealthy) {
+                log.info("Read replica is available, lag {}s", lag);
+            } else if (lag == null) {
+                log.warn("Read replica is unreachable or not streaming WAL, reading from primary");
+            } else {
+                log.warn("Read replica lags more than {} (lag: {}s), reading from primary", maxLag, lag);
+            }
+        }
+        healthy = nowHealthy;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+}
@@ -0,0 +1,46 @@
+package ru.urfu.store.feed.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Выбирает базу для нового соединения по маршруту текущего потока ({@link #route}); без маршрута — основную.
+ * Маршрут действует только на соединения, взятые после его установки: транзакция, начатая раньше,
+ * продолжает работать со своим соединением.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final ThreadLocal<Route> ROUTE = new ThreadLocal<>();
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica) {
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ROUTE.get();
+    }
+
+    public static <T> T route(Route route, Supplier<T> call) {
+        var previous = ROUTE.get();
+        ROUTE.set(route);
+        try {
+            return call.get();
+        } finally {
+            if (previous != null) {
+                ROUTE.set(previous);
+            } else {
+                ROUTE.remove();
+            }
+        }
+    }
+
+    public enum Route {
+        PRIMARY,
+        REPLICA
+    }
+}
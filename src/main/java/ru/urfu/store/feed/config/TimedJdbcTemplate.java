@@ -0,0 +1,217 @@
+package ru.urfu.store.feed.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import ru.urfu.store.feed.config.TimedNamedParameterJdbcTemplate.NamedStatement;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * {@link JdbcTemplate}, который замеряет каждый запрос репозиториев. Запрос называется по методу
+ * репозитория, из которого он выполнен ({@code FeedRepository.findAll}), и пишется в таймер
+ * {@code feed.sql} и распределение {@code feed.sql.rows} с тегом {@code statement}.
+ * Запросы дольше {@code slowThreshold} логируются с именем и текстом; значения параметров добавляются
+ * к записи только для доли {@code slowParamsSampleRate} из них, чтобы не выводить в лог все пользовательские
+ * данные, и каждое обрезается до {@value #MAX_LOGGED_VALUE_LENGTH} символов. Значения известны только
+ * у запросов {@link TimedNamedParameterJdbcTemplate}. Параметры пакетных запросов не логируются никогда:
+ * {@link BatchPreparedStatementSetter} не даёт их прочитать, вместо них в запись попадает размер пакета.
+ * <p>
+ * Имя запроса определяется обходом стека один раз на текст SQL и дальше берётся из кэша. Для запросов
+ * {@link TimedNamedParameterJdbcTemplate} это текст до подстановки списков, поэтому {@code (VALUES :rows)}
+ * разной длины не занимают кэш. Если один и тот же текст выполняют разные методы, все его выполнения
+ * записываются под именем первого.
+ * <p>
+ * {@code NamedParameterJdbcTemplate} выполняет всё через эти методы, поэтому отдельная обёртка
+ * для него не нужна. Вложенные вызовы (например, {@code query} с {@link RowMapper} поверх
+ * {@code query} с {@link ResultSetExtractor}) замеряются один раз, на внешнем уровне.
+ */
+@Slf4j
+public class TimedJdbcTemplate extends JdbcTemplate {
+
+    private static final String REPOSITORY_PACKAGE = "ru.urfu.store.feed.repository.";
+    private static final int MAX_LOGGED_VALUE_LENGTH = 100;
+    private static final int MAX_STATEMENT_NAMES = 1000;
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+    private static final ThreadLocal<Boolean> TIMING = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    private final Duration slowThreshold;
+    private final double slowParamsSampleRate;
+    private final ConcurrentHashMap<String, Meters> meters = new ConcurrentHashMap<>();
+    private final Cache<String, String> statementNames = Caffeine.newBuilder()
+            .maximumSize(MAX_STATEMENT_NAMES)
+            .build();
+
+    public TimedJdbcTemplate(DataSource dataSource, MeterRegistry meterRegistry,
+                             Duration slowThreshold, double slowParamsSampleRate) {
+        super(dataSource);
+        this.meterRegistry = meterRegistry;
+        this.slowThreshold = slowThreshold;
+        this.slowParamsSampleRate = slowParamsSampleRate;
+    }
+
+    @Override
+    public <T> T query(PreparedStatementCreator psc, ResultSetExtractor<T> rse) throws DataAccessException {
+        return timed(psc, () -> super.query(psc, rse), result -> -1);
+    }
+
+    @Override
+    public <T> List<T> query(PreparedStatementCreator psc, RowMapper<T> rowMapper) throws DataAccessException {
+        return timed(psc, () -> super.query(psc, rowMapper), List::size);
+    }
+
+    @Override
+    public void query(PreparedStatementCreator psc, RowCallbackHandler rch) throws DataAccessException {
+        var rows = new long[1];
+        timed(psc, () -> {
+            super.query(psc, (RowCallbackHandler) rs -> {
+                rows[0]++;
+                rch.processRow(rs);
+            });
+            return null;
+        }, result -> rows[0]);
+    }
+
+    @Override
+    public int update(PreparedStatementCreator psc) throws DataAccessException {
+        return timed(psc, () -> super.update(psc), Integer::longValue);
+    }
+
+    @Override
+    public int[] batchUpdate(String sql, BatchPreparedStatementSetter pss) throws DataAccessException {
+        return timed(sql, pss, () -> super.batchUpdate(sql, pss), counts -> Arrays.stream(counts).sum());
+    }
+
+    private <T> T timed(PreparedStatementCreator psc, Supplier<T> call, ToLongFunction<T> rowCount) {
+        if (psc instanceof NamedStatement named) {
+            return timed(named.sql(), named.params(), call, rowCount);
+        }
+        var sql = psc instanceof SqlProvider provider ? provider.getSql() : null;
+        return timed(sql, null, call, rowCount);
+    }
+
+    private <T> T timed(String sql, Object params, Supplier<T> call, ToLongFunction<T> rowCount) {
+        if (TIMING.get() != null) {
+            return call.get();
+        }
+
+        var statement = sql != null ? statementNames.get(sql, key -> statementName()) : statementName();
+        var statementMeters = meters.computeIfAbsent(statement, name -> new Meters(meterRegistry, name));
+        var start = System.nanoTime();
+        var outcome = "success";
+        TIMING.set(Boolean.TRUE);
+        try {
+            var result = call.get();
+            var rows = rowCount.applyAsLong(result);
+            if (rows >= 0) {
+                statementMeters.rows().record(rows);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            outcome = "error";
+            throw e;
+        } finally {
+            TIMING.remove();
+            var elapsed = System.nanoTime() - start;
+            statementMeters.timer(outcome).record(Duration.ofNanos(elapsed));
+            if (elapsed >= slowThreshold.toNanos()) {
+                logSlow(statement, elapsed, sql, params);
+            }
+        }
+    }
+
+    private void logSlow(String statement, long elapsedNanos, String sql, Object params) {
+        var millis = elapsedNanos / 1_000_000;
+        if (params instanceof BatchPreparedStatementSetter batch) {
+            log.warn("Slow SQL {} took {} ms (batch of {}): {}", statement, millis, batch.getBatchSize(), sql);
+        } else if (params instanceof SqlParameterSource source
+                && ThreadLocalRandom.current().nextDouble() < slowParamsSampleRate) {
+            log.warn("Slow SQL {} took {} ms: {} with {}", statement, millis, sql, describe(source));
+        } else {
+            log.warn("Slow SQL {} took {} ms: {}", statement, millis, sql);
+        }
+    }
+
+    /**
+     * Значения параметров по именам; массивы выводятся поэлементно.
+     */
+    static String describe(SqlParameterSource params) {
+        var names = params.getParameterNames();
+        if (names == null) {
+            return "unknown parameters";
+        }
+        var described = new StringJoiner(", ", "{", "}");
+        for (var name : names) {
+            var value = params.getValue(name);
+            if (value instanceof SqlParameterValue parameterValue) {
+                value = parameterValue.getValue();
+            }
+            var text = value instanceof Object[] array ? Arrays.deepToString(array) : String.valueOf(value);
+            if (text.length() > MAX_LOGGED_VALUE_LENGTH) {
+                text = text.substring(0, MAX_LOGGED_VALUE_LENGTH) + "...";
+            }
+            described.add(name + "=" + text);
+        }
+        return described.toString();
+    }
+
+    /**
+     * Имя запроса — первый метод репозитория в стеке вызова.
+     */
+    private static String statementName() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith(REPOSITORY_PACKAGE))
+                .findFirst()
+                .map(frame -> frame.getClassName().substring(REPOSITORY_PACKAGE.length()) + "." + frame.getMethodName())
+                .orElse("other"));
+    }
+
+    private record Meters(Timer success, Timer error, DistributionSummary rows) {
+
+        private Meters(MeterRegistry registry, String statement) {
+            this(
+                    timer(registry, statement, "success"),
+                    timer(registry, statement, "error"),
+                    DistributionSummary.builder("feed.sql.rows")
+                            .description("Rows returned or affected by a repository SQL statement")
+                            .tag("statement", statement)
+                            .register(registry)
+            );
+        }
+
+        private static Timer timer(MeterRegistry registry, String statement, String outcome) {
+            return Timer.builder("feed.sql")
+                    .description("Repository SQL statement latency")
+                    .tags(Tags.of("statement", statement, "outcome", outcome))
+                    .register(registry);
+        }
+
+        private Timer timer(String outcome) {
+            return "success".equals(outcome) ? success : error;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.urfu.store.feed.config;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterDisposer;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * {@link NamedParameterJdbcTemplate}, который передаёт в {@link TimedJdbcTemplate} запрос в том виде,
+ * в каком он написан в репозитории, и его параметры. После подстановки списков ({@code (VALUES :rows)})
+ * текст запроса свой для каждого размера списка, а значения параметров из готового
+ * {@link PreparedStatementCreator} не достать.
+ */
+public class TimedNamedParameterJdbcTemplate extends NamedParameterJdbcTemplate {
+
+    public TimedNamedParameterJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        super(jdbcTemplate);
+    }
+
+    @Override
+    protected PreparedStatementCreator getPreparedStatementCreator(
+            String sql, SqlParameterSource paramSource, Consumer<PreparedStatementCreatorFactory> customizer) {
+        return new NamedStatement(sql, paramSource, super.getPreparedStatementCreator(sql, paramSource, customizer));
+    }
+
+    /**
+     * @param sql    запрос с именованными параметрами, до подстановки списков
+     * @param params значения параметров
+     */
+    record NamedStatement(String sql, SqlParameterSource params, PreparedStatementCreator delegate)
+            implements PreparedStatementCreator, SqlProvider, ParameterDisposer {
+
+        @Override
+        public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
+            return delegate.createPreparedStatement(connection);
+        }
+
+        @Override
+        public String getSql() {
+            return sql;
+        }
+
+        @Override
+        public void cleanupParameters() {
+            if (delegate instanceof ParameterDisposer disposer) {
+                disposer.cleanupParameters();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ru.urfu.store.feed.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Диагностика режима виртуальных потоков ({@code spring.threads.virtual.enabled}).
+ * При старте пишет в лог размер пула соединений: в этом режиме он, а не пул Tomcat,
+ * ограничивает число одновременных запросов к базе. Если виртуальные потоки включены,
+ * слушает JFR-событие {@code jdk.VirtualThreadPinned}: каждое закрепление дольше порога
+ * логируется со стеком и считается в метрике {@code feed.virtual-threads.pinned}.
+ */
+@Slf4j
+@Component
+public class VirtualThreadDiagnostics {
+
+    private final boolean virtualThreads;
+    private final Duration pinnedThreshold;
+    private final HikariDataSource primaryPool;
+    private final Counter pinnedCounter;
+
+    private RecordingStream pinnedEvents;
+
+    public VirtualThreadDiagnostics(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${feed.virtual-threads.pinned-threshold}") Duration pinnedThreshold,
+            Map<String, HikariDataSource> pools,
+            MeterRegistry meterRegistry
+    ) {
+        this.virtualThreads = virtualThreads;
+        this.pinnedThreshold = pinnedThreshold;
+        this.primaryPool = primaryPool(pools);
+        this.pinnedCounter = Counter.builder("feed.virtual-threads.pinned")
+                .description("Virtual threads pinned to a carrier longer than the threshold")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        var poolSize = primaryPool != null ? primaryPool.getMaximumPoolSize() : -1;
+        log.info("Request threads: {}, JDBC pool size: {}", virtualThreads ? "virtual" : "platform", poolSize);
+
+        if (!virtualThreads) {
+            return;
+        }
+
+        pinnedEvents = new RecordingStream();
+        pinnedEvents.enable("jdk.VirtualThreadPinned").withThreshold(pinnedThreshold).withStackTrace();
+        pinnedEvents.onEvent("jdk.VirtualThreadPinned", event -> {
+            pinnedCounter.increment();
+            log.warn("Virtual thread pinned for {} ms:\n{}", event.getDuration().toMillis(), event.getStackTrace());
+        });
+        pinnedEvents.startAsync();
+    }
+
+    /**
+     * С репликой ({@code feed.replica.enabled}) основной {@code DataSource} — {@link ReplicaRoutingDataSource},
+     * а пул основной базы — отдельный бин {@code primaryDataSource}; без реплики это сам {@code dataSource}.
+     */
+    private static HikariDataSource primaryPool(Map<String, HikariDataSource> pools) {
+        var primary = pools.get("primaryDataSource");
+        return primary != null ? primary : pools.get("dataSource");
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pinnedEvents != null) {
+            pinnedEvents.close();
+        }
+    }
+}
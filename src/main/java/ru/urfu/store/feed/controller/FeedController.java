@@ -3,21 +3,46 @@ package ru.urfu.store.feed.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.urfu.store.feed.model.ChangeEvent;
 import ru.urfu.store.feed.model.Comment;
+import ru.urfu.store.feed.model.FeedDeletion;
+import ru.urfu.store.feed.model.FeedSearchHit;
 import ru.urfu.store.feed.model.dto.*;
+import ru.urfu.store.feed.service.EngagementIngestionService;
+import ru.urfu.store.feed.service.ExportLimiter;
+import ru.urfu.store.feed.service.FeedEtags;
 import ru.urfu.store.feed.service.FeedService;
 
+import java.util.List;
 import java.util.UUID;
 
 @Tag(name = "Сервис взаимодействия с новостной лентой")
 @RestController
+@Validated
 @RequiredArgsConstructor
 public class FeedController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
+    /**
+     * Верхняя граница {@code limit} во всех списках: страница собирается в памяти целиком.
+     * Всё содержимое без ограничений отдают выгрузки NDJSON.
+     */
+    private static final int MAX_LIMIT = 1000;
+
     private final FeedService feedService;
+    private final EngagementIngestionService engagementIngestionService;
+    private final ExportLimiter exportLimiter;
 
     @Operation(summary = "Метод создание новостной публикации")
     @ResponseStatus(HttpStatus.CREATED)
@@ -29,19 +54,52 @@ public class FeedController {
     @Operation(summary = "Получение информации о новости по feedId")
     @GetMapping("/{feed_id}")
     public FeedDto getFeed(
+            @PathVariable(name = "feed_id") UUID feedId,
+            @RequestParam(name = "user_id", required = false) UUID userId,
+            WebRequest request
+    ) {
+        var feed = feedService.getFeed(feedId, userId);
+        if (request.checkNotModified(FeedEtags.feed(feed), FeedEtags.lastModified(feed))) {
+            return null;
+        }
+        feedService.recordView(feedId);
+        return feed;
+    }
+
+    @Operation(summary = "Поток изменений счётчиков новости (Server-Sent Events)")
+    @GetMapping(path = "/{feed_id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamCounters(
             @PathVariable(name = "feed_id") UUID feedId
     ) {
-        return feedService.getFeed(feedId);
+        return feedService.streamCounters(feedId);
+    }
+
+    @Operation(summary = "Получение нескольких новостей по списку feedId")
+    @PostMapping("/batch")
+    public FeedBatchResponse getFeeds(@Valid @RequestBody FeedBatchRequest request) {
+        return feedService.getFeeds(request.getIds());
     }
 
-    @Operation(summary = "Получение всех новостей")
+    @Operation(summary = "Получение всех новостей; view=summary — без полного текста, только его начало")
     @GetMapping
-    public Paging<FeedDto> getAllFeeds(
+    public Paging<FeedListItem> getAllFeeds(
             @RequestParam(name = "limit", required = false, defaultValue = "100")
-            Integer limit,
+            @Min(1) @Max(MAX_LIMIT) Integer limit,
             @RequestParam(name = "offset", required = false, defaultValue = "0")
-            Integer offset) {
-        return feedService.getAllFeeds(limit, offset);
+            @Min(0) Integer offset,
+            @RequestParam(name = "cursor", required = false)
+            String cursor,
+            @RequestParam(name = "user_id", required = false)
+            UUID userId,
+            @RequestParam(name = "view", required = false, defaultValue = "full")
+            String view,
+            WebRequest request) {
+        var page = feedService.getAllFeeds(limit, offset, cursor, userId, FeedView.parse(view));
+        if (request.checkNotModified(FeedEtags.page(page), FeedEtags.lastModified(page))) {
+            return null;
+        }
+        feedService.recordViews(page);
+        return page;
     }
 
     @Operation(summary = "Обновить новость")
@@ -52,13 +110,21 @@ public class FeedController {
         return feedService.updateFeed(feedId, request);
     }
 
-    @Operation(summary = "Удалить новость")
-    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @Operation(summary = "Удалить новость; комментарии, лайки и избранное удаляются в фоне")
+    @ResponseStatus(HttpStatus.ACCEPTED)
     @DeleteMapping("/{feed_id}")
-    public void deleteFeed(
+    public FeedDeletion deleteFeed(
             @PathVariable(name = "feed_id") UUID feedId
     ) {
-        feedService.deleteFeed(feedId);
+        return feedService.deleteFeed(feedId);
+    }
+
+    @Operation(summary = "Ход удаления новости")
+    @GetMapping("/{feed_id}/deletion")
+    public FeedDeletion getDeletion(
+            @PathVariable(name = "feed_id") UUID feedId
+    ) {
+        return feedService.getDeletion(feedId);
     }
 
     @Operation(summary = "Лайкнуть новость")
@@ -85,6 +151,59 @@ public class FeedController {
         return feedService.addComment(request);
     }
 
+    @Operation(summary = "Комментарии к новости")
+    @GetMapping("/{feed_id}/comments")
+    public Paging<Comment> getComments(
+            @PathVariable(name = "feed_id") UUID feedId,
+            @RequestParam(name = "limit", required = false, defaultValue = "100")
+            @Min(1) @Max(MAX_LIMIT) Integer limit,
+            @RequestParam(name = "cursor", required = false)
+            String cursor) {
+        return feedService.getComments(feedId, limit, cursor);
+    }
+
+    @Operation(summary = "Выгрузка всех комментариев к новости в формате NDJSON")
+    @GetMapping(value = "/{feed_id}/comments/export", produces = NDJSON)
+    public StreamingResponseBody exportComments(
+            @PathVariable(name = "feed_id") UUID feedId) {
+        var permit = exportLimiter.acquire();
+        return out -> {
+            try (permit) {
+                feedService.exportComments(feedId, out);
+            }
+        };
+    }
+
+    @Operation(summary = "Комментарии пользователя")
+    @GetMapping("/comments")
+    public Paging<Comment> getUserComments(
+            @RequestParam(name = "user_id") UUID userId,
+            @RequestParam(name = "limit", required = false, defaultValue = "100")
+            @Min(1) @Max(MAX_LIMIT) Integer limit,
+            @RequestParam(name = "cursor", required = false)
+            String cursor) {
+        return feedService.getUserComments(userId, limit, cursor);
+    }
+
+    @Operation(summary = "Выгрузка всех комментариев пользователя в формате NDJSON")
+    @GetMapping(value = "/comments/export", produces = NDJSON)
+    public StreamingResponseBody exportUserComments(
+            @RequestParam(name = "user_id") UUID userId) {
+        var permit = exportLimiter.acquire();
+        return out -> {
+            try (permit) {
+                feedService.exportUserComments(userId, out);
+            }
+        };
+    }
+
+    @Operation(summary = "Массовая загрузка лайков, избранного и комментариев")
+    @PostMapping("/events/bulk")
+    public BulkEngagementResponse ingestEvents(
+            @Valid @RequestBody BulkEngagementRequest request) {
+        return engagementIngestionService.ingest(request.getEvents());
+    }
+
     @Operation(summary = "Добавить новость в избранное")
     @PostMapping("{feed_id}/star")
     public void starFeed(
@@ -103,15 +222,51 @@ public class FeedController {
         feedService.unStarFeed(feedId, userId);
     }
 
-    @Operation(summary = "Показать избранное")
+    @Operation(summary = "Показать избранное; view=summary — без полного текста, только его начало")
     @GetMapping("/favourites")
-    public Paging<FeedDto> getFavourites(
+    public Paging<FeedListItem> getFavourites(
             @RequestParam(name = "user_id") UUID userId,
             @RequestParam(name = "limit", required = false, defaultValue = "100")
-            Integer limit,
+            @Min(1) @Max(MAX_LIMIT) Integer limit,
             @RequestParam(name = "offset", required = false, defaultValue = "0")
-            Integer offset
+            @Min(0) Integer offset,
+            @RequestParam(name = "cursor", required = false)
+            String cursor,
+            @RequestParam(name = "view", required = false, defaultValue = "full")
+            String view
+    ) {
+        return feedService.getFavourites(userId, limit, offset, cursor, FeedView.parse(view));
+    }
+
+    @Operation(summary = "Журнал изменений новостей, лайков, избранного и комментариев после позиции since")
+    @GetMapping("/changes")
+    public Paging<ChangeEvent> getChanges(
+            @RequestParam(name = "since", required = false)
+            String since,
+            @RequestParam(name = "limit", required = false, defaultValue = "100")
+            @Min(1) @Max(MAX_LIMIT) Integer limit
+    ) {
+        return feedService.getChanges(since, limit);
+    }
+
+    @Operation(summary = "Популярные новости с учётом давности лайков, комментариев и просмотров")
+    @GetMapping("/trending")
+    public List<TrendingFeedDto> getTrending(
+            @RequestParam(name = "limit", required = false, defaultValue = "20")
+            @Min(1) @Max(MAX_LIMIT) Integer limit
+    ) {
+        return feedService.getTrending(limit);
+    }
+
+    @Operation(summary = "Полнотекстовый поиск по заголовку и тексту новостей")
+    @GetMapping("/search")
+    public Paging<FeedSearchHit> search(
+            @RequestParam(name = "q") String query,
+            @RequestParam(name = "limit", required = false, defaultValue = "20")
+            @Min(1) @Max(MAX_LIMIT) Integer limit,
+            @RequestParam(name = "cursor", required = false)
+            String cursor
     ) {
-        return feedService.getFavourites(userId, limit, offset);
+        return feedService.search(query, limit, cursor);
     }
-}
\ No newline at end of file
+}
@@ -1,12 +1,16 @@
 package ru.urfu.store.feed.controller;
 
+import jakarta.validation.ConstraintViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import ru.urfu.store.feed.model.dto.exception.FeedArchivedException;
 import ru.urfu.store.feed.model.dto.exception.ResourceNotFoundException;
+import ru.urfu.store.feed.model.dto.exception.TooManyExportsException;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -19,6 +23,18 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
     }
 
+    @ExceptionHandler(FeedArchivedException.class)
+    public ResponseEntity<String> handleFeedArchivedException(FeedArchivedException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(TooManyExportsException.class)
+    public ResponseEntity<String> handleTooManyExportsException(TooManyExportsException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .body(ex.getMessage());
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<String> handleIllegalArgumentException(IllegalArgumentException ex) {
         return ResponseEntity.badRequest().body(ex.getMessage());
@@ -35,6 +51,19 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(errors);
     }
 
+    @ExceptionHandler(ConstraintViolationException.class)
+    public ResponseEntity<Map<String, String>> handleConstraintViolationException(ConstraintViolationException ex) {
+        var errors = new HashMap<String, String>();
+        ex.getConstraintViolations().forEach(violation -> {
+            String parameterName = null;
+            for (var node : violation.getPropertyPath()) {
+                parameterName = node.getName();
+            }
+            errors.put(parameterName, violation.getMessage());
+        });
+        return ResponseEntity.badRequest().body(errors);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<String> handleGenericException(Exception ex) {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
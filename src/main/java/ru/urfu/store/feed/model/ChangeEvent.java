@@ -0,0 +1,47 @@
+package ru.urfu.store.feed.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.urfu.store.feed.model.dto.ChangeCursor;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+/**
+ * Запись {@code feed_outbox} об изменении публикации. Событие несёт только идентификаторы:
+ * актуальное состояние потребитель читает сам. {@code id} уникален и годится для дедупликации —
+ * доставка как минимум однократная.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeEvent {
+
+    @JsonIgnore
+    private long txid;
+
+    private long id;
+    private ChangeType type;
+    private UUID feedId;
+    private UUID userId;
+    private UUID commentId;
+    private ZonedDateTime created;
+
+    public static ChangeEvent of(ChangeType type, UUID feedId, UUID userId, UUID commentId) {
+        return ChangeEvent.builder()
+                .type(type)
+                .feedId(feedId)
+                .userId(userId)
+                .commentId(commentId)
+                .build();
+    }
+
+    @JsonIgnore
+    public ChangeCursor getCursor() {
+        return new ChangeCursor(txid, id);
+    }
+}
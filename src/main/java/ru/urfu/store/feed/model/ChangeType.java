@@ -0,0 +1,12 @@
+package ru.urfu.store.feed.model;
+
+public enum ChangeType {
+    FEED_CREATED,
+    FEED_UPDATED,
+    FEED_DELETED,
+    FEED_LIKED,
+    FEED_UNLIKED,
+    FEED_STARRED,
+    FEED_UNSTARRED,
+    COMMENT_ADDED
+}
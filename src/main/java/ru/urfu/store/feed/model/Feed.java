@@ -20,14 +20,28 @@ public class Feed {
     @Builder.Default
     private Long likesCount = 0L;
 
+    @Builder.Default
+    private Long starsCount = 0L;
+
     @Builder.Default
     private Long watchCount = 0L;
 
     @Builder.Default
     private Long commentsCount = 0L;
 
+    /**
+     * Растёт при каждом изменении заголовка или текста; счётчики её не меняют.
+     */
+    @Builder.Default
+    private Long version = 0L;
+
     @Builder.Default
     private ZonedDateTime created = ZonedDateTime.now();
 
     private ZonedDateTime updated;
+
+    /**
+     * Меняется при любом изменении, включая счётчики лайков, избранного и комментариев; просмотры её не меняют.
+     */
+    private ZonedDateTime modified;
 }
\ No newline at end of file
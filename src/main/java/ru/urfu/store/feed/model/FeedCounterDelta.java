@@ -0,0 +1,13 @@
+package ru.urfu.store.feed.model;
+
+/**
+ * Приращения денормализованных счётчиков одной публикации.
+ */
+public record FeedCounterDelta(long likes, long stars, long comments) {
+
+    public static final FeedCounterDelta ZERO = new FeedCounterDelta(0, 0, 0);
+
+    public FeedCounterDelta plus(FeedCounterDelta other) {
+        return new FeedCounterDelta(likes + other.likes, stars + other.stars, comments + other.comments);
+    }
+}
@@ -0,0 +1,39 @@
+package ru.urfu.store.feed.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+/**
+ * Ход удаления публикации. Сама публикация удаляется сразу, а её комментарии, лайки и избранное —
+ * фоновыми пачками; пока {@code finished} не заполнено, удаление не завершено.
+ * {@code *Total} — значения денормализованных счётчиков на момент удаления, поэтому это оценка.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedDeletion {
+    private UUID feedId;
+    private ZonedDateTime requested;
+    private ZonedDateTime finished;
+    private Long commentsTotal;
+    private Long likesTotal;
+    private Long starsTotal;
+    private Long commentsDeleted;
+    private Long likesDeleted;
+    private Long starsDeleted;
+
+    /**
+     * Время создания удалённой публикации — секция её комментариев и лайков. Пусто у удалений,
+     * поставленных в очередь до секционирования.
+     */
+    @JsonIgnore
+    private Instant feedCreated;
+}
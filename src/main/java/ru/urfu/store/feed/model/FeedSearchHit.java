@@ -0,0 +1,26 @@
+package ru.urfu.store.feed.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+/**
+ * Найденная публикация: вместо полного текста — фрагменты с совпадениями, выделенными {@code <mark>}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedSearchHit {
+    private UUID id;
+    private String title;
+    private String headline;
+    private Float rank;
+    private Long likesCount;
+    private Long commentsCount;
+    private ZonedDateTime created;
+}
@@ -0,0 +1,16 @@
+package ru.urfu.store.feed.model;
+
+/**
+ * Результат снятия лайка: вместе с лайком снимается и избранное, и каждое из них
+ * могло как быть, так и не быть.
+ */
+public record UnlikeOutcome(boolean feedExists, boolean unliked, boolean unstarred) {
+
+    public WriteOutcome like() {
+        return WriteOutcome.of(feedExists, unliked);
+    }
+
+    public WriteOutcome star() {
+        return WriteOutcome.of(feedExists, unstarred);
+    }
+}
@@ -0,0 +1,10 @@
+package ru.urfu.store.feed.model;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Какие из запрошенных публикаций пользователь лайкнул и добавил в избранное.
+ */
+public record UserFeedFlags(Set<UUID> liked, Set<UUID> starred) {
+}
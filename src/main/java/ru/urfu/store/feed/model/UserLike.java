@@ -0,0 +1,15 @@
+package ru.urfu.store.feed.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserLike {
+    private UUID userId;
+    private UUID feedId;
+}
@@ -0,0 +1,29 @@
+package ru.urfu.store.feed.model;
+
+/**
+ * Результат записи лайка, избранного или комментария, выполненной одним запросом
+ * вместе с проверкой существования публикации.
+ */
+public enum WriteOutcome {
+    APPLIED,
+    UNCHANGED,
+    FEED_NOT_FOUND,
+    /**
+     * Лайки или комментарии месяца публикации выгружены в архив и больше не принимаются.
+     */
+    FEED_ARCHIVED;
+
+    public static WriteOutcome of(boolean feedExists, boolean changed) {
+        return of(feedExists, false, changed);
+    }
+
+    public static WriteOutcome of(boolean feedExists, boolean archived, boolean changed) {
+        if (!feedExists) {
+            return FEED_NOT_FOUND;
+        }
+        if (archived) {
+            return FEED_ARCHIVED;
+        }
+        return changed ? APPLIED : UNCHANGED;
+    }
+}
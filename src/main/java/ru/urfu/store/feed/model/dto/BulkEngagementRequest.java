@@ -0,0 +1,23 @@
+package ru.urfu.store.feed.model.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkEngagementRequest {
+
+    @Valid
+    @NotEmpty(message = "Events are required")
+    @Size(max = 10000, message = "No more than 10000 events per request")
+    private List<EngagementEvent> events;
+}
@@ -0,0 +1,19 @@
+package ru.urfu.store.feed.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkEngagementResponse {
+    private long applied;
+    private long duplicates;
+    private long rejected;
+    private List<EngagementResult> results;
+}
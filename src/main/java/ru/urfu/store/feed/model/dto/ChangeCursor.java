@@ -0,0 +1,36 @@
+package ru.urfu.store.feed.model.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Позиция в журнале изменений: транзакция ({@code xid8}) и {@code id} последнего прочитанного события.
+ * Журнал упорядочен по этой паре, см. {@link ru.urfu.store.feed.repository.OutboxRepository}.
+ */
+public record ChangeCursor(long txid, long id) {
+
+    public static final ChangeCursor START = new ChangeCursor(0, 0);
+
+    private static final String SEPARATOR = "|";
+
+    public String encode() {
+        var raw = Long.toString(txid) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ChangeCursor decode(String cursor) {
+        try {
+            var raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            var separatorIndex = raw.indexOf(SEPARATOR);
+            if (separatorIndex < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return new ChangeCursor(
+                    Long.parseLong(raw.substring(0, separatorIndex)),
+                    Long.parseLong(raw.substring(separatorIndex + 1))
+            );
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ru.urfu.store.feed.model.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EngagementEvent {
+
+    @NotNull(message = "Event type is required")
+    private EngagementType type;
+
+    @NotNull(message = "Feed ID is required")
+    private UUID feedId;
+
+    @NotNull(message = "User ID is required")
+    private UUID userId;
+
+    /**
+     * Текст комментария, обязателен только для {@link EngagementType#COMMENT}.
+     */
+    private String text;
+}
@@ -0,0 +1,9 @@
+package ru.urfu.store.feed.model.dto;
+
+public enum EngagementStatus {
+    APPLIED,
+    DUPLICATE,
+    FEED_NOT_FOUND,
+    FEED_ARCHIVED,
+    INVALID
+}
@@ -0,0 +1,7 @@
+package ru.urfu.store.feed.model.dto;
+
+public enum EngagementType {
+    LIKE,
+    STAR,
+    COMMENT
+}
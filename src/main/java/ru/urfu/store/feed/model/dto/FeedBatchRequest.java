@@ -0,0 +1,23 @@
+package ru.urfu.store.feed.model.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedBatchRequest {
+
+    @NotEmpty(message = "Feed IDs are required")
+    @Size(max = 500, message = "No more than 500 feed IDs per batch")
+    private List<@NotNull(message = "Feed ID must not be null") UUID> ids;
+}
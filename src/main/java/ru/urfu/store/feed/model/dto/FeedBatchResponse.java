@@ -0,0 +1,18 @@
+package ru.urfu.store.feed.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedBatchResponse {
+    private List<FeedDto> feeds;
+    private List<UUID> missingIds;
+}
@@ -0,0 +1,29 @@
+package ru.urfu.store.feed.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Событие потока {@code /{feed_id}/stream}: текущие значения счётчиков и их изменение
+ * с предыдущего события. Медленный клиент получает несколько изменений одним событием:
+ * приращения в нём суммарные.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedCountersDto {
+    private UUID feedId;
+    private Long likesCount;
+    private Long starsCount;
+    private Long commentsCount;
+    private Long watchCount;
+    private Long likesDelta;
+    private Long starsDelta;
+    private Long commentsDelta;
+    private Long watchDelta;
+}
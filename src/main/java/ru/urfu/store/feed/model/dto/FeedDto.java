@@ -1,5 +1,6 @@
 package ru.urfu.store.feed.model.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -9,16 +10,36 @@ import java.time.ZonedDateTime;
 import java.util.UUID;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
-public class FeedDto {
+public class FeedDto implements FeedListItem {
     private UUID id;
     private String title;
     private String text;
     private Long likesCount;
+    private Long starsCount;
     private Long watchCount;
     private Long commentsCount;
     private ZonedDateTime created;
     private ZonedDateTime updated;
-}
\ No newline at end of file
+
+    /**
+     * Последнее изменение текста или счётчиков, кроме просмотров; отдаётся в {@code Last-Modified}.
+     */
+    private ZonedDateTime modified;
+
+    /**
+     * Заполняются, только если в запросе передан {@code user_id}.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean likedByMe;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean starredByMe;
+
+    @Override
+    public FeedDto withUserFlags(boolean likedByMe, boolean starredByMe) {
+        return toBuilder().likedByMe(likedByMe).starredByMe(starredByMe).build();
+    }
+}
@@ -0,0 +1,33 @@
+package ru.urfu.store.feed.model.dto;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+/**
+ * Общее у элементов списков публикаций в любом {@link FeedView}.
+ */
+public interface FeedListItem {
+
+    UUID getId();
+
+    ZonedDateTime getCreated();
+
+    ZonedDateTime getUpdated();
+
+    ZonedDateTime getModified();
+
+    Long getLikesCount();
+
+    Long getStarsCount();
+
+    Long getCommentsCount();
+
+    Boolean getLikedByMe();
+
+    Boolean getStarredByMe();
+
+    /**
+     * Копия элемента с флагами текущего пользователя: сам элемент может лежать в общем кэше.
+     */
+    FeedListItem withUserFlags(boolean likedByMe, boolean starredByMe);
+}
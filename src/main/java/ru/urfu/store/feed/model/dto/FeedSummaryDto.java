@@ -0,0 +1,42 @@
+package ru.urfu.store.feed.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedSummaryDto implements FeedListItem {
+    private UUID id;
+    private String title;
+    private String snippet;
+    private Long likesCount;
+    private Long starsCount;
+    private Long watchCount;
+    private Long commentsCount;
+    private ZonedDateTime created;
+    private ZonedDateTime updated;
+
+    /**
+     * Последнее изменение текста или счётчиков, кроме просмотров; отдаётся в {@code Last-Modified}.
+     */
+    private ZonedDateTime modified;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean likedByMe;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean starredByMe;
+
+    @Override
+    public FeedSummaryDto withUserFlags(boolean likedByMe, boolean starredByMe) {
+        return toBuilder().likedByMe(likedByMe).starredByMe(starredByMe).build();
+    }
+}
@@ -0,0 +1,20 @@
+package ru.urfu.store.feed.model.dto;
+
+import java.util.Locale;
+
+/**
+ * Представление публикаций в списках: {@code FULL} — {@link FeedDto} с полным текстом,
+ * {@code SUMMARY} — {@link FeedSummaryDto} с началом текста, обрезанным ещё в базе.
+ */
+public enum FeedView {
+    FULL,
+    SUMMARY;
+
+    public static FeedView parse(String value) {
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown view: " + value, e);
+        }
+    }
+}
@@ -16,4 +16,26 @@ public class Paging<T> {
     Integer limit;
     Integer offset;
     List<T> currentValues;
+
+    /**
+     * Курсор следующей страницы, {@code null} если страница последняя. Возвращается и на страницах,
+     * запрошенных через offset: по нему можно продолжить уже в keyset-режиме.
+     */
+    String nextCursor;
+
+    TotalCountMode totalCountMode;
+
+    /**
+     * Есть ли записи после текущей страницы; считается по лишней строке выборки
+     * и не зависит от режима подсчёта {@code totalCount}.
+     */
+    Boolean hasMore;
+
+    public Paging(Long totalCount, Integer limit, Integer offset, List<T> currentValues) {
+        this(totalCount, limit, offset, currentValues, null);
+    }
+
+    public Paging(Long totalCount, Integer limit, Integer offset, List<T> currentValues, String nextCursor) {
+        this(totalCount, limit, offset, currentValues, nextCursor, null, null);
+    }
 }
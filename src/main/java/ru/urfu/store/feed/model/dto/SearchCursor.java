@@ -0,0 +1,31 @@
+package ru.urfu.store.feed.model.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Позиция в результатах поиска: ранг и {@code id} последней записи страницы.
+ * Ранг хранится в том же {@code real}, что возвращает {@code ts_rank_cd}, чтобы сравнение было точным.
+ */
+public record SearchCursor(float rank, UUID id) {
+
+    private static final String SEPARATOR = "|";
+
+    public String encode() {
+        var raw = Float.toString(rank) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SearchCursor decode(String cursor) {
+        var raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        var separatorIndex = raw.indexOf(SEPARATOR);
+        if (separatorIndex < 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return new SearchCursor(
+                Float.parseFloat(raw.substring(0, separatorIndex)),
+                UUID.fromString(raw.substring(separatorIndex + 1))
+        );
+    }
+}
@@ -0,0 +1,15 @@
+package ru.urfu.store.feed.model.dto;
+
+/**
+ * Как посчитан {@link Paging#getTotalCount()}.
+ */
+public enum TotalCountMode {
+    /** Точный {@code COUNT(*)} на каждый запрос. */
+    EXACT,
+    /** Точное значение, закэшированное на {@code feed.paging.total-count-ttl}. */
+    CACHED,
+    /** Оценка планировщика из {@code pg_class.reltuples}. */
+    ESTIMATE,
+    /** Общее количество не считается, о продолжении говорит {@code hasMore}. */
+    NONE
+}
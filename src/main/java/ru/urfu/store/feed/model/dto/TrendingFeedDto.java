@@ -0,0 +1,15 @@
+package ru.urfu.store.feed.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrendingFeedDto {
+    private FeedDto feed;
+    private Double score;
+}
@@ -0,0 +1,7 @@
+package ru.urfu.store.feed.model.dto.exception;
+
+public class FeedArchivedException extends RuntimeException {
+    public FeedArchivedException(String message) {
+        super(message);
+    }
+}
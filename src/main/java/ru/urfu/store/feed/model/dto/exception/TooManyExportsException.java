@@ -0,0 +1,7 @@
+package ru.urfu.store.feed.model.dto.exception;
+
+public class TooManyExportsException extends RuntimeException {
+    public TooManyExportsException(String message) {
+        super(message);
+    }
+}
@@ -1,27 +1,40 @@
 package ru.urfu.store.feed.repository;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import ru.urfu.store.feed.model.Comment;
+import ru.urfu.store.feed.model.WriteOutcome;
+import ru.urfu.store.feed.model.dto.PageCursor;
+import ru.urfu.store.feed.model.dto.Paging;
+import ru.urfu.store.feed.model.dto.TotalCountMode;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
+/**
+ * Комментарии секционированы по месяцу {@code feed_created} (см. миграцию {@code 011}): запросы по публикации
+ * передают месяц её создания и читают одну секцию, а комментарии пользователя собираются из всех.
+ */
 @Repository
 @RequiredArgsConstructor
 public class CommentRepository {
 
+    private static final int STREAM_FETCH_SIZE = 1000;
+
     private final NamedParameterJdbcTemplate jdbcTemplate;
 
-    private Comment mapRow(ResultSet rs, int rowNum) throws SQLException {
+    Comment mapRow(ResultSet rs, int rowNum) throws SQLException {
         return Comment.builder()
                 .id(rs.getObject("id", UUID.class))
                 .text(rs.getString("text"))
@@ -44,20 +57,33 @@ public class CommentRepository {
                 null;
     }
 
+    /**
+     * Добавляет комментарий и увеличивает {@code comments_count} одним запросом. При {@link WriteOutcome#APPLIED}
+     * записывает в {@code comment} сгенерированный id. Комментарии публикаций месяцев, выгруженных в архив,
+     * не принимаются.
+     */
     @Transactional
-    public Comment save(Comment comment) {
-        if (comment.getId() == null) {
-            return insert(comment);
-        } else {
-            return update(comment);
-        }
-    }
-
-    private Comment insert(Comment comment) {
+    public WriteOutcome insert(Comment comment) {
         var sql = """
-                INSERT INTO comment (text, user_id, feed_id, created, updated)
-                VALUES (:text, :userId, :feedId, :created, :updated)
-                RETURNING id
+                WITH target AS (
+                    SELECT id, created, engagement_archived('comment', created) AS archived
+                    FROM feed
+                    WHERE id = :feedId
+                ), inserted AS (
+                    INSERT INTO comment (text, user_id, feed_id, created, updated, feed_created)
+                    SELECT :text, :userId, id, CAST(:created AS timestamptz), CAST(:updated AS timestamptz), created
+                    FROM target
+                    WHERE NOT archived
+                    RETURNING id, feed_id
+                ), counted AS (
+                    UPDATE feed
+                    SET comments_count = comments_count + 1,
+                        modified = now()
+                    WHERE id IN (SELECT feed_id FROM inserted)
+                )
+                SELECT EXISTS (SELECT 1 FROM target) AS feed_exists,
+                       EXISTS (SELECT 1 FROM target WHERE archived) AS archived,
+                       (SELECT id FROM inserted) AS id
                 """;
 
         var params = new MapSqlParameterSource()
@@ -67,23 +93,57 @@ public class CommentRepository {
                 .addValue("created", convertToTimestamp(comment.getCreated()))
                 .addValue("updated", convertToTimestamp(comment.getUpdated()));
 
-        var generatedId = jdbcTemplate.queryForObject(sql, params, UUID.class);
-        comment.setId(generatedId);
-        return comment;
+        return jdbcTemplate.queryForObject(sql, params, (rs, rowNum) -> {
+            var id = rs.getObject("id", UUID.class);
+            if (id != null) {
+                comment.setId(id);
+            }
+            return WriteOutcome.of(rs.getBoolean("feed_exists"), rs.getBoolean("archived"), id != null);
+        });
     }
 
-    private Comment update(Comment comment) {
+    /**
+     * Пакетная вставка комментариев с заранее сгенерированными id, без обновления {@code comments_count}.
+     * Возвращает число вставленных строк для каждого комментария: {@code 0} означает, что публикацию
+     * уже удалили или её комментарии выгружены в архив, и комментарий пропущен.
+     */
+    @Transactional
+    public int[] insertAll(List<Comment> comments) {
+        var sql = """
+                INSERT INTO comment (id, text, user_id, feed_id, created, updated, feed_created)
+                SELECT :id, :text, :userId, id, CAST(:created AS timestamptz), CAST(:updated AS timestamptz), created
+                FROM feed
+                WHERE id = :feedId AND NOT engagement_archived('comment', created)
+                """;
+
+        var batch = comments.stream()
+                .map(comment -> new MapSqlParameterSource()
+                        .addValue("id", comment.getId())
+                        .addValue("text", comment.getText())
+                        .addValue("userId", comment.getUserId())
+                        .addValue("feedId", comment.getFeedId())
+                        .addValue("created", convertToTimestamp(comment.getCreated()))
+                        .addValue("updated", convertToTimestamp(comment.getUpdated())))
+                .toArray(MapSqlParameterSource[]::new);
+
+        return jdbcTemplate.batchUpdate(sql, batch);
+    }
+
+    @Transactional
+    public Comment update(Comment comment) {
         var sql = """
                 UPDATE comment 
                 SET text = :text, 
                     updated = :updated
                 WHERE id = :id
+                  AND feed_created = (SELECT created FROM feed WHERE id = :feedId)
                 """;
 
         comment.setUpdated(ZonedDateTime.now());
 
         var params = new MapSqlParameterSource()
                 .addValue("id", comment.getId())
+                .addValue("feedId", comment.getFeedId())
                 .addValue("text", comment.getText())
                 .addValue("updated", convertToTimestamp(comment.getUpdated()));
 
@@ -91,25 +151,126 @@ public class CommentRepository {
         return comment;
     }
 
-    public List<Comment> findByFeedId(UUID feedId) {
-        var sql = "SELECT * FROM comment WHERE feed_id = :feedId ORDER BY created DESC";
-        var params = new MapSqlParameterSource().addValue("feedId", feedId);
+    /**
+     * Секция выбирается по {@code feed.created} при выполнении запроса. Комментарии публикаций,
+     * стоящих в очереди на удаление ({@code feed_deletion}), поэтому не отдаются: строки {@code feed}
+     * у них уже нет, хотя сами комментарии физически удаляются позже.
+     */
+    public Paging<Comment> findByFeedId(UUID feedId, PageCursor cursor, Integer limit) {
+        var sql = cursor == null ? """
+                SELECT * FROM comment
+                WHERE feed_id = :feedId AND feed_created = (SELECT created FROM feed WHERE id = :feedId)
+                ORDER BY created DESC, id DESC
+                LIMIT :limit
+                """ : """
+                SELECT * FROM comment
+                WHERE feed_id = :feedId AND (created, id) < (:created, :id)
+                  AND feed_created = (SELECT created FROM feed WHERE id = :feedId)
+                ORDER BY created DESC, id DESC
+                LIMIT :limit
+                """;
+        var params = cursorParams(cursor, limit).addValue("feedId", feedId);
 
-        return jdbcTemplate.query(sql, params, this::mapRow);
+        var comments = jdbcTemplate.query(sql, params, this::mapRow);
+        return page(comments, limit);
     }
 
-    @Transactional
-    public void deleteByFeedId(UUID feedId) {
-        var sql = "DELETE FROM comment WHERE feed_id = :feedId";
-        var params = new MapSqlParameterSource().addValue("feedId", feedId);
+    public Paging<Comment> findByUserId(UUID userId, PageCursor cursor, Integer limit) {
+        var sql = cursor == null ? """
+                SELECT * FROM comment c
+                WHERE user_id = :userId AND NOT EXISTS (SELECT 1 FROM feed_deletion d WHERE d.feed_id = c.feed_id)
+                ORDER BY created DESC, id DESC
+                LIMIT :limit
+                """ : """
+                SELECT * FROM comment c
+                WHERE user_id = :userId AND (created, id) < (:created, :id)
+                  AND NOT EXISTS (SELECT 1 FROM feed_deletion d WHERE d.feed_id = c.feed_id)
+                ORDER BY created DESC, id DESC
+                LIMIT :limit
+                """;
+        var params = cursorParams(cursor, limit).addValue("userId", userId);
 
-        jdbcTemplate.update(sql, params);
+        var comments = jdbcTemplate.query(sql, params, this::mapRow);
+        return page(comments, limit);
+    }
+
+    /**
+     * Отдаёт все комментарии публикации по одному, не собирая их в память.
+     * Транзакция нужна драйверу, чтобы читать результат порциями по {@code fetchSize} через курсор.
+     */
+    @Transactional(readOnly = true)
+    public void streamByFeedId(UUID feedId, Consumer<Comment> consumer) {
+        stream("""
+                SELECT * FROM comment
+                WHERE feed_id = ? AND feed_created = (SELECT created FROM feed WHERE id = ?)
+                ORDER BY created DESC, id DESC
+                """, consumer, feedId, feedId);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamByUserId(UUID userId, Consumer<Comment> consumer) {
+        stream("""
+                SELECT * FROM comment c
+                WHERE user_id = ? AND NOT EXISTS (SELECT 1 FROM feed_deletion d WHERE d.feed_id = c.feed_id)
+                ORDER BY created DESC, id DESC
+                """, consumer, userId);
     }
 
-    public List<Comment> findByUserId(UUID userId) {
-        var sql = "SELECT * FROM comment WHERE user_id = :userId ORDER BY created DESC";
-        var params = new MapSqlParameterSource().addValue("userId", userId);
+    private void stream(String sql, Consumer<Comment> consumer, Object... params) {
+        jdbcTemplate.getJdbcOperations().query(
+                connection -> {
+                    var ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(STREAM_FETCH_SIZE);
+                    for (var i = 0; i < params.length; i++) {
+                        ps.setObject(i + 1, params[i]);
+                    }
+                    return ps;
+                },
+                (RowCallbackHandler) rs -> consumer.accept(mapRow(rs, rs.getRow()))
+        );
+    }
+
+    private MapSqlParameterSource cursorParams(PageCursor cursor, Integer limit) {
+        var params = new MapSqlParameterSource().addValue("limit", limit + 1);
+        if (cursor != null) {
+            params.addValue("created", Timestamp.from(cursor.created()))
+                    .addValue("id", cursor.id());
+        }
+        return params;
+    }
+
+    private Paging<Comment> page(List<Comment> rows, Integer limit) {
+        var hasMore = rows.size() > limit;
+        var comments = hasMore ? rows.subList(0, limit) : rows;
+        var nextCursor = hasMore ?
+                new PageCursor(comments.getLast().getCreated().toInstant(), comments.getLast().getId()).encode() :
+                null;
+
+        var page = new Paging<>(null, limit, null, comments, nextCursor);
+        page.setTotalCountMode(TotalCountMode.NONE);
+        page.setHasMore(hasMore);
+        return page;
+    }
+
+    /**
+     * Удаляет не больше {@code limit} комментариев публикации и возвращает их число.
+     * {@code feedCreated} — время создания уже удалённой публикации; без него (удаления, поставленные
+     * в очередь до секционирования) просматриваются все секции.
+     */
+    @Transactional
+    public int deleteByFeedId(UUID feedId, Instant feedCreated, int limit) {
+        var partition = feedCreated != null ? "AND feed_created = :feedCreated" : "";
+        var sql = """
+                DELETE FROM comment
+                WHERE (id, feed_created) IN (
+                    SELECT id, feed_created FROM comment WHERE feed_id = :feedId %1$s LIMIT :limit
+                ) %1$s
+                """.formatted(partition);
+        var params = new MapSqlParameterSource()
+                .addValue("feedId", feedId)
+                .addValue("feedCreated", feedCreated != null ? Timestamp.from(feedCreated) : null)
+                .addValue("limit", limit);
 
-        return jdbcTemplate.query(sql, params, this::mapRow);
+        return jdbcTemplate.update(sql, params);
     }
-}
\ No newline at end of file
+}
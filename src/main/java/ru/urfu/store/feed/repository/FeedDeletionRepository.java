@@ -0,0 +1,116 @@
+package ru.urfu.store.feed.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.urfu.store.feed.model.FeedDeletion;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Очередь фонового удаления публикаций в {@code feed_deletion}. Строка появляется в той же команде,
+ * что удаляет саму публикацию, и остаётся после завершения — по ней отдаётся статус удаления.
+ */
+@Repository
+@RequiredArgsConstructor
+public class FeedDeletionRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private FeedDeletion mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return FeedDeletion.builder()
+                .feedId(rs.getObject("feed_id", UUID.class))
+                .requested(convertToZonedDateTime(rs.getTimestamp("requested")))
+                .finished(convertToZonedDateTime(rs.getTimestamp("finished")))
+                .commentsTotal(rs.getLong("comments_total"))
+                .likesTotal(rs.getLong("likes_total"))
+                .starsTotal(rs.getLong("stars_total"))
+                .commentsDeleted(rs.getLong("comments_deleted"))
+                .likesDeleted(rs.getLong("likes_deleted"))
+                .starsDeleted(rs.getLong("stars_deleted"))
+                .feedCreated(convertToInstant(rs.getTimestamp("feed_created")))
+                .build();
+    }
+
+    private ZonedDateTime convertToZonedDateTime(Timestamp timestamp) {
+        return timestamp != null ?
+                ZonedDateTime.ofInstant(timestamp.toInstant(), ZoneId.systemDefault()) :
+                null;
+    }
+
+    private Instant convertToInstant(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toInstant() : null;
+    }
+
+    /**
+     * Удаляет строку {@code feed} и ставит её зависимые строки в очередь одним запросом.
+     * Пустой результат означает, что публикации нет (или её уже удалили).
+     */
+    @Transactional
+    public Optional<FeedDeletion> tombstone(UUID feedId) {
+        var sql = """
+                WITH deleted AS (
+                    DELETE FROM feed
+                    WHERE id = :feedId
+                    RETURNING id, created, comments_count, likes_count, stars_count
+                )
+                INSERT INTO feed_deletion (feed_id, feed_created, comments_total, likes_total, stars_total)
+                SELECT id, created, comments_count, likes_count, stars_count FROM deleted
+                RETURNING *
+                """;
+
+        var params = new MapSqlParameterSource().addValue("feedId", feedId);
+        return jdbcTemplate.query(sql, params, this::mapRow).stream().findFirst();
+    }
+
+    public Optional<FeedDeletion> findById(UUID feedId) {
+        var sql = "SELECT * FROM feed_deletion WHERE feed_id = :feedId";
+        var params = new MapSqlParameterSource().addValue("feedId", feedId);
+        return jdbcTemplate.query(sql, params, this::mapRow).stream().findFirst();
+    }
+
+    /**
+     * Берёт самое старое незавершённое удаление под блокировку до конца текущей транзакции.
+     * Удаления, которые уже обрабатывает другой экземпляр, пропускаются.
+     */
+    public Optional<FeedDeletion> lockNextPending() {
+        var sql = """
+                SELECT * FROM feed_deletion
+                WHERE finished IS NULL
+                ORDER BY requested
+                LIMIT 1
+                FOR UPDATE SKIP LOCKED
+                """;
+
+        return jdbcTemplate.query(sql, new MapSqlParameterSource(), this::mapRow).stream().findFirst();
+    }
+
+    @Transactional
+    public void recordProgress(UUID feedId, int comments, int likes, int stars, boolean finished) {
+        var sql = """
+                UPDATE feed_deletion
+                SET comments_deleted = comments_deleted + :comments,
+                    likes_deleted = likes_deleted + :likes,
+                    stars_deleted = stars_deleted + :stars,
+                    finished = CASE WHEN :finished THEN now() END
+                WHERE feed_id = :feedId
+                """;
+
+        var params = new MapSqlParameterSource()
+                .addValue("feedId", feedId)
+                .addValue("comments", comments)
+                .addValue("likes", likes)
+                .addValue("stars", stars)
+                .addValue("finished", finished);
+        jdbcTemplate.update(sql, params);
+    }
+}
@@ -1,46 +1,82 @@
 package ru.urfu.store.feed.repository;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSourceUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import ru.urfu.store.feed.model.Feed;
+import ru.urfu.store.feed.model.FeedCounterDelta;
+import ru.urfu.store.feed.model.UnlikeOutcome;
+import ru.urfu.store.feed.model.UserFeedFlags;
+import ru.urfu.store.feed.model.UserLike;
+import ru.urfu.store.feed.model.WriteOutcome;
+import ru.urfu.store.feed.model.dto.FeedView;
+import ru.urfu.store.feed.model.dto.PageCursor;
 import ru.urfu.store.feed.model.dto.Paging;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.time.Instant;
 import java.time.OffsetDateTime;
-import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Repository
 @RequiredArgsConstructor
 public class FeedRepository {
 
-    private final NamedParameterJdbcTemplate jdbcTemplate;
-
-    private Feed mapRow(ResultSet rs, int rowNum) throws SQLException {
-        return Feed.builder()
-                .id(rs.getObject("id", UUID.class))
-                .title(rs.getString("title"))
-                .text(rs.getString("text"))
-                .likesCount(rs.getLong("likes_count"))
-                .watchCount(rs.getLong("watch_count"))
-                .commentsCount(rs.getLong("comments_count"))
-                .created(convertToZonedDateTime(rs.getTimestamp("created")))
-                .updated(convertToZonedDateTime(rs.getTimestamp("updated")))
-                .build();
-    }
+    private static final String SELECT_FEED = """
+            SELECT
+                f.id,
+                f.title,
+                f.text,
+                f.created,
+                f.updated,
+                f.watch_count,
+                f.likes_count,
+                f.stars_count,
+                f.comments_count,
+                f.version,
+                f.modified
+            FROM feed f
+            """;
+
+    /**
+     * То же, что {@link #SELECT_FEED}, но вместо текста — его начало длиной {@link #SNIPPET_LENGTH}.
+     * Обрезка в базе, чтобы полный текст не читался драйвером и не попадал в кучу.
+     */
+    private static final String SELECT_FEED_SUMMARY = """
+            SELECT
+                f.id,
+                f.title,
+                left(f.text, :snippetLength) AS text,
+                f.created,
+                f.updated,
+                f.watch_count,
+                f.likes_count,
+                f.stars_count,
+                f.comments_count,
+                f.version,
+                f.modified
+            FROM feed f
+            """;
+
+    private static final int SNIPPET_LENGTH = 300;
+
+    private static final int VALUES_BATCH_SIZE = 1000;
 
-    private ZonedDateTime convertToZonedDateTime(Timestamp timestamp) {
-        return timestamp != null ?
-                ZonedDateTime.ofInstant(timestamp.toInstant(), ZoneId.systemDefault()) :
-                null;
-    }
+    private final NamedParameterJdbcTemplate jdbcTemplate;
 
     private Timestamp convertToTimestamp(ZonedDateTime zonedDateTime) {
         return zonedDateTime != null ?
@@ -75,13 +111,19 @@ public class FeedRepository {
         return feed;
     }
 
+    /**
+     * Меняет заголовок и текст и увеличивает {@code version}, по которой кэш отбрасывает устаревшие копии.
+     */
     private Feed update(Feed feed) {
         var sql = """
                 UPDATE feed 
                 SET title = :title, 
                     text = :text, 
-                    updated = :updated
+                    updated = :updated,
+                    modified = :updated,
+                    version = version + 1
                 WHERE id = :id
+                RETURNING version
                 """;
 
         feed.setUpdated(ZonedDateTime.now());
@@ -92,39 +134,12 @@ public class FeedRepository {
                 .addValue("text", feed.getText())
                 .addValue("updated", convertToTimestamp(feed.getUpdated()));
 
-        jdbcTemplate.update(sql, params);
+        jdbcTemplate.query(sql, params, (RowCallbackHandler) rs -> feed.setVersion(rs.getLong("version")));
         return feed;
     }
 
     public Optional<Feed> findById(UUID id) {
-        var sql = """
-                SELECT 
-                    f.id,
-                    f.title,
-                    f.text,
-                    f.created,
-                    f.updated,
-                    f.watch_count,
-                    COALESCE(ul.likes_count, 0) AS likes_count,
-                    COALESCE(c.comments_count, 0) AS comments_count
-                FROM feed f
-                LEFT JOIN (
-                    SELECT feed_id, COUNT(*) AS likes_count 
-                    FROM user_like 
-                    GROUP BY feed_id
-                ) ul ON f.id = ul.feed_id
-                LEFT JOIN (
-                    SELECT feed_id, COUNT(*) AS stars_count 
-                    FROM user_star 
-                    GROUP BY feed_id
-                ) us ON f.id = us.feed_id
-                LEFT JOIN (
-                    SELECT feed_id, COUNT(*) AS comments_count 
-                    FROM comment 
-                    GROUP BY feed_id
-                ) c ON f.id = c.feed_id
-                WHERE f.id = :id
-                """;
+        var sql = SELECT_FEED + "WHERE f.id = :id";
 
         var params = new MapSqlParameterSource().addValue("id", id);
 
@@ -133,177 +148,402 @@ public class FeedRepository {
         return feeds.stream().findFirst();
     }
 
+    public List<Feed> findAllByIds(Collection<? extends UUID> ids) {
+        return findAllByIds(ids, FeedView.FULL);
+    }
+
+    public List<Feed> findAllByIds(Collection<? extends UUID> ids, FeedView view) {
+        var sql = select(view) + "WHERE f.id = ANY(CAST(:ids AS uuid[]))";
+
+        var params = new MapSqlParameterSource()
+                .addValue("ids", SqlArrays.uuids(ids))
+                .addValue("snippetLength", SNIPPET_LENGTH);
+
+        return jdbcTemplate.query(sql, params, this::mapRowWithCounts);
+    }
+
     public Paging<Feed> findAll(Integer limit, Integer offset) {
-        var countSql = "SELECT COUNT(*) FROM feed";
-        var total = jdbcTemplate.queryForObject(countSql, new MapSqlParameterSource(), Long.class);
+        return findAll(limit, offset, FeedView.FULL);
+    }
 
-        var sql = """
-                SELECT 
-                    f.*,
-                    COALESCE(l.likes_count, 0) AS likes_count,
-                    COALESCE(c.comments_count, 0) AS comments_count
-                FROM feed f
-                LEFT JOIN (
-                    SELECT feed_id, COUNT(*) AS likes_count 
-                    FROM user_like 
-                    GROUP BY feed_id
-                ) l ON f.id = l.feed_id
-                LEFT JOIN (
-                    SELECT feed_id, COUNT(*) AS stars_count 
-                    FROM user_star 
-                    GROUP BY feed_id
-                ) s ON f.id = s.feed_id
-                LEFT JOIN (
-                    SELECT feed_id, COUNT(*) AS comments_count 
-                    FROM comment 
-                    GROUP BY feed_id
-                ) c ON f.id = c.feed_id
-                ORDER BY f.created DESC 
+    public Paging<Feed> findAll(Integer limit, Integer offset, FeedView view) {
+        var sql = select(view) + """
+                ORDER BY f.created DESC, f.id DESC
                 LIMIT :limit OFFSET :offset
                 """;
 
         var params = new MapSqlParameterSource()
-                .addValue("limit", limit)
-                .addValue("offset", offset);
+                .addValue("limit", limit + 1)
+                .addValue("offset", offset)
+                .addValue("snippetLength", SNIPPET_LENGTH);
+
+        var feeds = jdbcTemplate.query(sql, params, this::mapRowWithCounts);
+
+        return page(feeds, limit, offset);
+    }
+
+    public Paging<Feed> findAllAfter(PageCursor cursor, Integer limit) {
+        return findAllAfter(cursor, limit, FeedView.FULL);
+    }
+
+    public Paging<Feed> findAllAfter(PageCursor cursor, Integer limit, FeedView view) {
+        var sql = select(view) + """
+                WHERE (f.created, f.id) < (:created, :id)
+                ORDER BY f.created DESC, f.id DESC
+                LIMIT :limit
+                """;
+
+        var params = new MapSqlParameterSource()
+                .addValue("created", Timestamp.from(cursor.created()))
+                .addValue("id", cursor.id())
+                .addValue("limit", limit + 1)
+                .addValue("snippetLength", SNIPPET_LENGTH);
 
         var feeds = jdbcTemplate.query(sql, params, this::mapRowWithCounts);
 
-        return new Paging<>(total, limit, offset, feeds);
+        return page(feeds, limit, null);
+    }
+
+    private static String select(FeedView view) {
+        return view == FeedView.SUMMARY ? SELECT_FEED_SUMMARY : SELECT_FEED;
+    }
+
+    public long countAll() {
+        var sql = "SELECT COUNT(*) FROM feed";
+        return jdbcTemplate.queryForObject(sql, new MapSqlParameterSource(), Long.class);
     }
 
-    private Feed mapRowWithCounts(ResultSet rs, int rowNum) throws SQLException {
+    /**
+     * Оценка числа публикаций по статистике планировщика, без сканирования таблицы.
+     * Возвращает отрицательное число, если таблицу ещё ни разу не анализировали.
+     */
+    public long estimateCountAll() {
+        var sql = "SELECT reltuples::bigint FROM pg_class WHERE oid = 'feed'::regclass";
+        return jdbcTemplate.queryForObject(sql, new MapSqlParameterSource(), Long.class);
+    }
+
+    /**
+     * Считается по одному индексу {@code user_star}, без соединения с {@code feed}: избранное удалённой
+     * публикации учитывается, пока его не дочистит фоновое удаление.
+     */
+    public long countStarred(UUID userId) {
+        var sql = "SELECT COUNT(*) FROM user_star WHERE user_id = :userId";
+        var params = new MapSqlParameterSource().addValue("userId", userId);
+        return jdbcTemplate.queryForObject(sql, params, Long.class);
+    }
+
+    /**
+     * Собирает страницу из выборки на {@code limit + 1} строк: лишняя строка только говорит,
+     * что дальше есть ещё данные. Общее количество заполняет сервис в зависимости от режима.
+     */
+    private Paging<Feed> page(List<Feed> rows, Integer limit, Integer offset) {
+        var hasMore = rows.size() > limit;
+        var feeds = hasMore ? rows.subList(0, limit) : rows;
+        var nextCursor = hasMore ?
+                new PageCursor(feeds.getLast().getCreated().toInstant(), feeds.getLast().getId()).encode() :
+                null;
+
+        var page = new Paging<>(null, limit, offset, feeds, nextCursor);
+        page.setHasMore(hasMore);
+        return page;
+    }
+
+    Feed mapRowWithCounts(ResultSet rs, int rowNum) throws SQLException {
         return Feed.builder()
                 .id(rs.getObject("id", UUID.class))
                 .title(rs.getString("title"))
                 .text(rs.getString("text"))
                 .likesCount(rs.getLong("likes_count"))
+                .starsCount(rs.getLong("stars_count"))
                 .watchCount(rs.getLong("watch_count"))
                 .commentsCount(rs.getLong("comments_count"))
+                .version(rs.getLong("version"))
                 .created(rs.getObject("created", OffsetDateTime.class).toZonedDateTime())
                 .updated(Optional.ofNullable(rs.getObject("updated", OffsetDateTime.class))
                         .map(OffsetDateTime::toZonedDateTime)
                         .orElse(null))
+                .modified(rs.getObject("modified", OffsetDateTime.class).toZonedDateTime())
                 .build();
     }
 
-    @Transactional
-    public void deleteById(UUID id) {
-        var sql = "DELETE FROM feed WHERE id = :id";
-        var params = new MapSqlParameterSource().addValue("id", id);
-        jdbcTemplate.update(sql, params);
+    public Set<UUID> findExistingIds(Collection<? extends UUID> ids) {
+        var sql = "SELECT id FROM feed WHERE id = ANY(CAST(:ids AS uuid[]))";
+        var params = new MapSqlParameterSource().addValue("ids", SqlArrays.uuids(ids));
+
+        return new HashSet<>(jdbcTemplate.queryForList(sql, params, UUID.class));
     }
 
-    public boolean existsById(UUID id) {
-        var sql = "SELECT COUNT(*) FROM feed WHERE id = :id";
-        var params = new MapSqlParameterSource().addValue("id", id);
-        var count = jdbcTemplate.queryForObject(sql, params, Integer.class);
+    /**
+     * Лайки и избранное пользователя среди {@code feedIds} одним запросом по первичным ключам
+     * {@code user_like} и {@code user_star}. Лайки ищутся только в секциях месяцев создания этих публикаций.
+     */
+    public UserFeedFlags findUserFlags(UUID userId, Collection<? extends UUID> feedIds) {
+        var sql = """
+                SELECT l.feed_id, 'LIKE' AS kind
+                FROM feed f
+                JOIN user_like l ON l.user_id = :userId AND l.feed_id = f.id AND l.feed_created = f.created
+                WHERE f.id = ANY(CAST(:ids AS uuid[]))
+                UNION ALL
+                SELECT feed_id, 'STAR' AS kind
+                FROM user_star
+                WHERE user_id = :userId AND feed_id = ANY(CAST(:ids AS uuid[]))
+                """;
 
-        return count != null && count > 0;
+        var params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("ids", SqlArrays.uuids(feedIds));
+
+        var liked = new HashSet<UUID>();
+        var starred = new HashSet<UUID>();
+        jdbcTemplate.query(sql, params, (RowCallbackHandler) rs -> {
+            var feedId = rs.getObject("feed_id", UUID.class);
+            if ("LIKE".equals(rs.getString("kind"))) {
+                liked.add(feedId);
+            } else {
+                starred.add(feedId);
+            }
+        });
+        return new UserFeedFlags(liked, starred);
     }
 
+    /**
+     * Ставит лайк и увеличивает {@code likes_count} одним запросом, проверяя существование публикации в нём же.
+     * Лайки публикаций месяцев, выгруженных в архив, не принимаются.
+     */
     @Transactional
-    public void incrementLikesCount(UUID feedId, UUID userId) {
+    public WriteOutcome like(UUID feedId, UUID userId) {
         var sql = """
-                
-                    INSERT INTO user_like(user_id, feed_id) VALUES (
-                        :userId, :feedId                                                
-                    ) ON CONFLICT DO NOTHING
+                WITH target AS (
+                    SELECT id, created, engagement_archived('user_like', created) AS archived
+                    FROM feed
+                    WHERE id = :feedId
+                ), inserted AS (
+                    INSERT INTO user_like (user_id, feed_id, feed_created)
+                    SELECT :userId, id, created FROM target WHERE NOT archived
+                    ON CONFLICT DO NOTHING
+                    RETURNING feed_id
+                ), counted AS (
+                    UPDATE feed
+                    SET likes_count = likes_count + 1,
+                        modified = now()
+                    WHERE id IN (SELECT feed_id FROM inserted)
+                )
+                SELECT EXISTS (SELECT 1 FROM target) AS feed_exists,
+                       EXISTS (SELECT 1 FROM target WHERE archived) AS archived,
+                       EXISTS (SELECT 1 FROM inserted) AS changed
                 """;
 
         var params = new MapSqlParameterSource()
                 .addValue("feedId", feedId)
                 .addValue("userId", userId);
-        jdbcTemplate.update(sql, params);
+        return jdbcTemplate.queryForObject(sql, params, (rs, rowNum) -> WriteOutcome.of(
+                rs.getBoolean("feed_exists"), rs.getBoolean("archived"), rs.getBoolean("changed")));
     }
 
+    /**
+     * Пакетная вставка лайков. Возвращает число вставленных строк для каждого лайка:
+     * {@code 0} означает, что такой лайк уже был, публикацию уже удалили или её лайки выгружены в архив.
+     * Счётчики не трогает — см. {@link #incrementCounters}.
+     */
     @Transactional
-    public void incrementWatchCount(UUID feedId) {
+    public int[] insertLikes(List<UserLike> likes) {
         var sql = """
-                UPDATE feed 
-                SET watch_count = watch_count + 1,
-                    updated = NOW()
-                WHERE id = :id
+                INSERT INTO user_like (user_id, feed_id, feed_created)
+                SELECT :userId, id, created FROM feed
+                WHERE id = :feedId AND NOT engagement_archived('user_like', created)
+                ON CONFLICT DO NOTHING
                 """;
 
-        var params = new MapSqlParameterSource().addValue("id", feedId);
-        jdbcTemplate.update(sql, params);
+        return jdbcTemplate.batchUpdate(sql, SqlParameterSourceUtils.createBatch(likes));
     }
 
     @Transactional
-    public void incrementCommentsCount(UUID feedId) {
+    public void incrementCounters(Map<UUID, FeedCounterDelta> deltas) {
         var sql = """
-                UPDATE feed 
-                SET comments_count = comments_count + 1,
-                    updated = NOW()
-                WHERE id = :id
+                UPDATE feed f
+                SET likes_count = f.likes_count + v.likes,
+                    stars_count = f.stars_count + v.stars,
+                    comments_count = f.comments_count + v.comments,
+                    modified = now()
+                FROM (VALUES :rows) AS v(id, likes, stars, comments)
+                WHERE f.id = v.id
+                """;
+
+        var rows = deltas.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> new Object[]{
+                        entry.getKey(),
+                        entry.getValue().likes(),
+                        entry.getValue().stars(),
+                        entry.getValue().comments()
+                })
+                .toList();
+
+        for (var from = 0; from < rows.size(); from += VALUES_BATCH_SIZE) {
+            var chunk = rows.subList(from, Math.min(from + VALUES_BATCH_SIZE, rows.size()));
+            jdbcTemplate.update(sql, new MapSqlParameterSource().addValue("rows", chunk));
+        }
+    }
+
+    /**
+     * Применяет накопленные просмотры одним {@code UPDATE ... FROM (VALUES ...)} на пачку.
+     * Идентификаторы сортируются, чтобы параллельные сбросы с разных инстансов брали
+     * блокировки строк в одном порядке.
+     */
+    @Transactional
+    public void incrementWatchCounts(Map<UUID, Long> deltas) {
+        var sql = """
+                UPDATE feed f
+                SET watch_count = f.watch_count + v.delta
+                FROM (VALUES :rows) AS v(id, delta)
+                WHERE f.id = v.id
                 """;
 
-        var params = new MapSqlParameterSource().addValue("id", feedId);
-        jdbcTemplate.update(sql, params);
+        var rows = deltas.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> new Object[]{entry.getKey(), entry.getValue()})
+                .toList();
+
+        for (var from = 0; from < rows.size(); from += VALUES_BATCH_SIZE) {
+            var chunk = rows.subList(from, Math.min(from + VALUES_BATCH_SIZE, rows.size()));
+            jdbcTemplate.update(sql, new MapSqlParameterSource().addValue("rows", chunk));
+        }
     }
 
+    /**
+     * Снимает лайк и, как и раньше, убирает публикацию из избранного пользователя. Оба счётчика
+     * обновляются одним {@code UPDATE}: строку {@code feed} нельзя менять дважды в одном запросе.
+     */
     @Transactional
-    public void decrementLikesCount(UUID feedId, UUID userId) {
-        jdbcTemplate.update(
-                """
-                        DELETE FROM user_like WHERE user_id = :userId and feed_id = :feedId
-                        """,
-                new MapSqlParameterSource().addValue("userId", userId)
-                        .addValue("feedId", feedId)
-
-        );
+    public UnlikeOutcome unlike(UUID feedId, UUID userId) {
+        var sql = """
+                WITH target AS (
+                    SELECT id, created FROM feed WHERE id = :feedId
+                ), unliked AS (
+                    DELETE FROM user_like
+                    WHERE user_id = :userId AND feed_id IN (SELECT id FROM target)
+                      AND feed_created = (SELECT created FROM target)
+                    RETURNING feed_id
+                ), unstarred AS (
+                    DELETE FROM user_star
+                    WHERE user_id = :userId AND feed_id IN (SELECT id FROM target)
+                    RETURNING feed_id
+                ), counted AS (
+                    UPDATE feed
+                    SET likes_count = likes_count - (SELECT COUNT(*) FROM unliked),
+                        stars_count = stars_count - (SELECT COUNT(*) FROM unstarred),
+                        modified = now()
+                    WHERE id IN (SELECT feed_id FROM unliked UNION SELECT feed_id FROM unstarred)
+                )
+                SELECT EXISTS (SELECT 1 FROM target) AS feed_exists,
+                       EXISTS (SELECT 1 FROM unliked) AS unliked,
+                       EXISTS (SELECT 1 FROM unstarred) AS unstarred
+                """;
+
+        var params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("feedId", feedId);
+        return jdbcTemplate.queryForObject(sql, params, (rs, rowNum) -> new UnlikeOutcome(
+                rs.getBoolean("feed_exists"),
+                rs.getBoolean("unliked"),
+                rs.getBoolean("unstarred")
+        ));
     }
 
+    /**
+     * Удаляет не больше {@code limit} лайков публикации и возвращает их число. Счётчики не трогает:
+     * вызывается для уже удалённых публикаций. Без {@code feedCreated} просматриваются все секции.
+     */
     @Transactional
-    public void deleteLikes(UUID feedId) {
-        jdbcTemplate.update(
-                """
-                        DELETE FROM user_like WHERE feed_id = :feedId
-                        """,
-                new MapSqlParameterSource().addValue("feedId", feedId)
-
-        );
+    public int deleteLikes(UUID feedId, Instant feedCreated, int limit) {
+        var partition = feedCreated != null ? "AND feed_created = :feedCreated" : "";
+        var sql = """
+                DELETE FROM user_like
+                WHERE feed_id = :feedId %1$s
+                  AND user_id IN (SELECT user_id FROM user_like WHERE feed_id = :feedId %1$s LIMIT :limit)
+                """.formatted(partition);
+        var params = new MapSqlParameterSource()
+                .addValue("feedId", feedId)
+                .addValue("feedCreated", feedCreated != null ? Timestamp.from(feedCreated) : null)
+                .addValue("limit", limit);
+
+        return jdbcTemplate.update(sql, params);
     }
 
-    public Paging<Feed> findAllStarred(UUID userId, Integer limit, Integer offset) {
-        var countSql = "SELECT COUNT(f.*) FROM feed f JOIN user_star us on us.feed_id = f.id WHERE user_id = :userId";
-        var total = jdbcTemplate.queryForObject(countSql, new MapSqlParameterSource().addValue(
-                "userId", userId
-        ), Long.class);
+    /**
+     * Блокирует следующие {@code batchSize} публикаций в порядке создания, чтобы пачка попадала в одну-две
+     * секции {@code comment} и {@code user_like}. Строки блокируются в порядке id, как и при других
+     * массовых обновлениях {@code feed}.
+     */
+    public List<PageCursor> lockBatchForReconciliation(PageCursor after, int batchSize) {
+        var sql = """
+                SELECT id, created FROM feed
+                WHERE id IN (
+                    SELECT id FROM feed
+                    %s
+                    ORDER BY created, id
+                    LIMIT :batchSize
+                )
+                ORDER BY id
+                FOR UPDATE
+                """.formatted(after != null ? "WHERE (created, id) > (:created, :id)" : "");
+
+        var params = new MapSqlParameterSource().addValue("batchSize", batchSize);
+        if (after != null) {
+            params.addValue("created", Timestamp.from(after.created()))
+                    .addValue("id", after.id());
+        }
+
+        return jdbcTemplate.query(sql, params, (rs, rowNum) ->
+                new PageCursor(rs.getTimestamp("created").toInstant(), rs.getObject("id", UUID.class)));
+    }
 
+    /**
+     * Пересчитывает счётчики лайков, избранного и комментариев для переданных публикаций
+     * и исправляет только разошедшиеся строки. Строки {@code feed} должны быть заблокированы
+     * в текущей транзакции предыдущим запросом, иначе конкурентный инкремент может потеряться.
+     * Лайки и комментарии читаются только из секций между самой ранней и самой поздней публикацией пачки.
+     */
+    @Transactional
+    public int reconcileCounters(List<PageCursor> feeds) {
         var sql = """
-                SELECT 
-                    f.*,
-                    COALESCE(l.likes_count, 0) AS likes_count,
-                    COALESCE(c.comments_count, 0) AS comments_count
-                FROM feed f
-                INNER JOIN (
-                    SELECT feed_id, COUNT(*) AS stars_count 
-                    FROM user_star 
-                    WHERE user_id = :userId
-                    GROUP BY feed_id, user_id
-                ) s ON f.id = s.feed_id
+                UPDATE feed f
+                SET likes_count = COALESCE(l.likes_count, 0),
+                    stars_count = COALESCE(s.stars_count, 0),
+                    comments_count = COALESCE(c.comments_count, 0),
+                    modified = now()
+                FROM feed target
                 LEFT JOIN (
-                    SELECT feed_id, COUNT(*) AS likes_count 
-                    FROM user_like 
+                    SELECT feed_id, COUNT(*) AS likes_count
+                    FROM user_like
+                    WHERE feed_id = ANY(CAST(:ids AS uuid[]))
+                      AND feed_created BETWEEN :from AND :to
                     GROUP BY feed_id
-                ) l ON f.id = l.feed_id
+                ) l ON target.id = l.feed_id
                 LEFT JOIN (
-                    SELECT feed_id, COUNT(*) AS comments_count 
-                    FROM comment 
+                    SELECT feed_id, COUNT(*) AS stars_count
+                    FROM user_star
+                    WHERE feed_id = ANY(CAST(:ids AS uuid[]))
                     GROUP BY feed_id
-                ) c ON f.id = c.feed_id
-                ORDER BY f.created DESC 
-                LIMIT :limit OFFSET :offset
+                ) s ON target.id = s.feed_id
+                LEFT JOIN (
+                    SELECT feed_id, COUNT(*) AS comments_count
+                    FROM comment
+                    WHERE feed_id = ANY(CAST(:ids AS uuid[]))
+                      AND feed_created BETWEEN :from AND :to
+                    GROUP BY feed_id
+                ) c ON target.id = c.feed_id
+                WHERE f.id = target.id
+                  AND target.id = ANY(CAST(:ids AS uuid[]))
+                  AND (f.likes_count, f.stars_count, f.comments_count) IS DISTINCT FROM
+                      (COALESCE(l.likes_count, 0), COALESCE(s.stars_count, 0), COALESCE(c.comments_count, 0))
                 """;
 
+        var created = feeds.stream().map(PageCursor::created).toList();
         var params = new MapSqlParameterSource()
-                .addValue("userId", userId)
-                .addValue("limit", limit)
-                .addValue("offset", offset);
-
-        var feeds = jdbcTemplate.query(sql, params, this::mapRowWithCounts);
-
-        return new Paging<>(total, limit, offset, feeds);
+                .addValue("ids", SqlArrays.uuids(feeds.stream().map(PageCursor::id).toList()))
+                .addValue("from", Timestamp.from(Collections.min(created)))
+                .addValue("to", Timestamp.from(Collections.max(created)));
+        return jdbcTemplate.update(sql, params);
     }
 }
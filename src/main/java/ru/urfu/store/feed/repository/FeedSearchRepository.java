@@ -0,0 +1,91 @@
+package ru.urfu.store.feed.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.urfu.store.feed.model.FeedSearchHit;
+import ru.urfu.store.feed.model.dto.Paging;
+import ru.urfu.store.feed.model.dto.SearchCursor;
+import ru.urfu.store.feed.model.dto.TotalCountMode;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+/**
+ * Полнотекстовый поиск по {@code feed.search_vector} (GIN-индекс {@code feed_search_vector_idx}).
+ * Совпадения ранжируются {@code ts_rank_cd} и листаются по ключу {@code (rank, id)};
+ * {@code ts_headline}, который перечитывает текст публикации, считается только для строк страницы.
+ */
+@Repository
+@RequiredArgsConstructor
+public class FeedSearchRepository {
+
+    private static final String SEARCH = """
+            WITH q AS (
+                SELECT websearch_to_tsquery('russian', :query) AS query
+            ), page AS (
+                SELECT f.id, ts_rank_cd(f.search_vector, q.query) AS rank
+                FROM feed f, q
+                WHERE f.search_vector @@ q.query
+                %s
+                ORDER BY rank DESC, f.id DESC
+                LIMIT :limit
+            )
+            SELECT
+                f.id,
+                f.title,
+                f.created,
+                f.likes_count,
+                f.comments_count,
+                page.rank,
+                ts_headline('russian', f.text, q.query,
+                    'MaxFragments=2, MaxWords=20, MinWords=5, StartSel=<mark>, StopSel=</mark>') AS headline
+            FROM page
+            JOIN feed f ON f.id = page.id
+            CROSS JOIN q
+            ORDER BY page.rank DESC, page.id DESC
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public Paging<FeedSearchHit> search(String query, SearchCursor cursor, int limit) {
+        var params = new MapSqlParameterSource()
+                .addValue("query", query)
+                .addValue("limit", limit + 1);
+
+        String sql;
+        if (cursor != null) {
+            sql = SEARCH.formatted("AND (ts_rank_cd(f.search_vector, q.query), f.id) < (CAST(:rank AS real), :id)");
+            params.addValue("rank", cursor.rank())
+                    .addValue("id", cursor.id());
+        } else {
+            sql = SEARCH.formatted("");
+        }
+
+        var rows = jdbcTemplate.query(sql, params, this::mapRow);
+
+        var hasMore = rows.size() > limit;
+        var hits = hasMore ? rows.subList(0, limit) : rows;
+        var nextCursor = hasMore ?
+                new SearchCursor(hits.getLast().getRank(), hits.getLast().getId()).encode() :
+                null;
+
+        return new Paging<>(null, limit, null, hits, nextCursor, TotalCountMode.NONE, hasMore);
+    }
+
+    private FeedSearchHit mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return FeedSearchHit.builder()
+                .id(rs.getObject("id", UUID.class))
+                .title(rs.getString("title"))
+                .headline(rs.getString("headline"))
+                .rank(rs.getFloat("rank"))
+                .likesCount(rs.getLong("likes_count"))
+                .commentsCount(rs.getLong("comments_count"))
+                .created(ZonedDateTime.ofInstant(rs.getTimestamp("created").toInstant(), ZoneId.systemDefault()))
+                .build();
+    }
+}
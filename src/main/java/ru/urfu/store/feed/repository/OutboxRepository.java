@@ -0,0 +1,157 @@
+package ru.urfu.store.feed.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.urfu.store.feed.model.ChangeEvent;
+import ru.urfu.store.feed.model.ChangeType;
+import ru.urfu.store.feed.model.dto.ChangeCursor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Журнал изменений {@code feed_outbox}.
+ * <p>
+ * События пишутся в транзакции самого изменения, поэтому {@code id} из последовательности не задаёт
+ * порядок фиксации: транзакция с меньшим {@code id} может зафиксироваться позже и её события
+ * проскочили бы мимо читателя, продвинувшегося по {@code id}. Поэтому журнал читается в порядке
+ * {@code (txid, id)} и только по транзакциям младше {@code pg_snapshot_xmin} текущего снимка:
+ * все они уже завершены, и новых событий с такими {@code txid} не появится.
+ * Цена — долгая транзакция в базе задерживает чтение журнала до своего завершения.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OutboxRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    private ChangeEvent mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return ChangeEvent.builder()
+                .txid(rs.getLong("txid"))
+                .id(rs.getLong("id"))
+                .type(ChangeType.valueOf(rs.getString("type")))
+                .feedId(rs.getObject("feed_id", UUID.class))
+                .userId(rs.getObject("user_id", UUID.class))
+                .commentId(rs.getObject("comment_id", UUID.class))
+                .created(ZonedDateTime.ofInstant(rs.getTimestamp("created").toInstant(), ZoneId.systemDefault()))
+                .build();
+    }
+
+    /**
+     * Добавляет событие в журнал. Вызывается только внутри транзакции изменения,
+     * иначе событие и изменение могут разойтись.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(ChangeEvent event) {
+        appendAll(List.of(event));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void appendAll(List<ChangeEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        var sql = """
+                INSERT INTO feed_outbox (type, feed_id, user_id, comment_id)
+                VALUES (:type, :feedId, :userId, :commentId)
+                """;
+
+        var batch = events.stream()
+                .map(event -> new MapSqlParameterSource()
+                        .addValue("type", event.getType().name())
+                        .addValue("feedId", event.getFeedId())
+                        .addValue("userId", event.getUserId())
+                        .addValue("commentId", event.getCommentId()))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(sql, batch);
+    }
+
+    public List<ChangeEvent> findAfter(ChangeCursor after, int limit) {
+        var sql = """
+                SELECT CAST(CAST(txid AS text) AS bigint) AS txid, id, type, feed_id, user_id, comment_id, created
+                FROM feed_outbox
+                WHERE (txid, id) > (CAST(CAST(:txid AS text) AS xid8), :id)
+                  AND txid < pg_snapshot_xmin(pg_current_snapshot())
+                ORDER BY txid, id
+                LIMIT :limit
+                """;
+
+        var params = new MapSqlParameterSource()
+                .addValue("txid", after.txid())
+                .addValue("id", after.id())
+                .addValue("limit", limit);
+        return jdbcTemplate.query(sql, params, this::mapRow);
+    }
+
+    /**
+     * Позиция ретранслятора {@code name}, заблокированная до конца текущей транзакции. Пусто, если
+     * эту позицию сейчас держит другой экземпляр сервиса.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<ChangeCursor> lockRelayPosition(String name) {
+        jdbcTemplate.update(
+                "INSERT INTO feed_outbox_relay (name) VALUES (:name) ON CONFLICT DO NOTHING",
+                new MapSqlParameterSource().addValue("name", name));
+
+        var sql = """
+                SELECT CAST(CAST(txid AS text) AS bigint) AS txid, id
+                FROM feed_outbox_relay
+                WHERE name = :name
+                FOR UPDATE SKIP LOCKED
+                """;
+
+        var params = new MapSqlParameterSource().addValue("name", name);
+        return jdbcTemplate.query(sql, params, (rs, rowNum) -> new ChangeCursor(rs.getLong("txid"), rs.getLong("id")))
+                .stream()
+                .findFirst();
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void saveRelayPosition(String name, ChangeCursor position) {
+        var sql = """
+                UPDATE feed_outbox_relay
+                SET txid = CAST(CAST(:txid AS text) AS xid8),
+                    id = :id,
+                    updated = now()
+                WHERE name = :name
+                """;
+
+        var params = new MapSqlParameterSource()
+                .addValue("name", name)
+                .addValue("txid", position.txid())
+                .addValue("id", position.id());
+        jdbcTemplate.update(sql, params);
+    }
+
+    /**
+     * Удаляет не больше {@code limit} событий старше {@code before} и возвращает их число.
+     */
+    @Transactional
+    public int deleteOlderThan(Instant before, int limit) {
+        var sql = """
+                DELETE FROM feed_outbox
+                WHERE (txid, id) IN (
+                    SELECT txid, id FROM feed_outbox
+                    WHERE created < :before
+                    LIMIT :limit
+                )
+                """;
+
+        var params = new MapSqlParameterSource()
+                .addValue("before", Timestamp.from(before))
+                .addValue("limit", limit);
+        return jdbcTemplate.update(sql, params);
+    }
+}
@@ -0,0 +1,212 @@
+package ru.urfu.store.feed.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Месячные секции {@code comment} и {@code user_like} (миграция {@code 011}) и журнал их архивации
+ * {@code engagement_archive}. Имена секций — {@code <таблица>_ГГГГ_ММ}, границы — месяцы по UTC.
+ * <p>
+ * Имена таблиц в DDL не передаются параметрами, поэтому принимаются только имена этого вида.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PartitionRepository {
+
+    public static final String COMMENTS = "comment";
+    public static final String LIKES = "user_like";
+    public static final List<String> PARTITIONED_TABLES = List.of(COMMENTS, LIKES);
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("([a-z_]+)_(\\d{4})_(\\d{2})");
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Создаёт недостающие секции месяцев с {@code from} до {@code to} и возвращает их число.
+     */
+    @Transactional
+    public int createPartitions(String table, Instant from, Instant to) {
+        var sql = "SELECT create_monthly_partitions(:table, CAST(:from AS timestamptz), CAST(:to AS timestamptz))";
+        var params = new MapSqlParameterSource()
+                .addValue("table", requireTable(table))
+                .addValue("from", Timestamp.from(from))
+                .addValue("to", Timestamp.from(to));
+
+        return jdbcTemplate.queryForObject(sql, params, Integer.class);
+    }
+
+    /**
+     * Месячные секции таблицы, включая уже отсоединённые, но ещё не удалённые, от старых к новым.
+     */
+    public List<MonthlyPartition> findPartitions(String table) {
+        var sql = """
+                SELECT relname, relispartition
+                FROM pg_class
+                WHERE relkind = 'r'
+                  AND relnamespace = CAST(current_schema() AS regnamespace)
+                  AND relname ~ :pattern
+                ORDER BY relname
+                """;
+        var params = new MapSqlParameterSource()
+                .addValue("pattern", "^" + requireTable(table) + "_[0-9]{4}_[0-9]{2}$");
+
+        return jdbcTemplate.query(sql, params, (rs, rowNum) ->
+                MonthlyPartition.of(rs.getString("relname"), rs.getBoolean("relispartition")));
+    }
+
+    /**
+     * Записывает месяц секции в {@code engagement_archive} ещё без файла. С фиксацией этой записи
+     * лайки и комментарии публикаций месяца перестают приниматься (см. миграцию {@code 012}),
+     * поэтому вызывается до {@link #detach}: после отсоединения новые строки ушли бы в {@code _default}.
+     */
+    @Transactional
+    public void freeze(MonthlyPartition partition) {
+        var sql = """
+                INSERT INTO engagement_archive (partition_name, parent, range_from, range_to)
+                VALUES (:name, :parent, :from, :to)
+                ON CONFLICT (partition_name) DO NOTHING
+                """;
+        var params = new MapSqlParameterSource()
+                .addValue("name", partition.name())
+                .addValue("parent", partition.parent())
+                .addValue("from", Timestamp.from(partition.from()))
+                .addValue("to", Timestamp.from(partition.to()));
+        jdbcTemplate.update(sql, params);
+    }
+
+    /**
+     * Отсоединяет секцию. {@code DETACH} ждёт исключительной блокировки родительской таблицы,
+     * поэтому ожидание ограничено: за ней в очередь встали бы все запросы к таблице.
+     */
+    @Transactional
+    public void detach(MonthlyPartition partition, Duration lockTimeout) {
+        var jdbc = jdbcTemplate.getJdbcOperations();
+        jdbc.execute("SET LOCAL lock_timeout = " + lockTimeout.toMillis());
+        jdbc.execute("ALTER TABLE " + partition.parent() + " DETACH PARTITION " + partition.name());
+    }
+
+    /**
+     * Не даёт двум экземплярам архивировать одну секцию: блокировка держится до конца текущей транзакции.
+     */
+    public boolean tryLock(MonthlyPartition partition) {
+        var sql = "SELECT pg_try_advisory_xact_lock(hashtext(:name)) AND to_regclass(:name) IS NOT NULL";
+        var params = new MapSqlParameterSource().addValue("name", partition.name());
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, params, Boolean.class));
+    }
+
+    /**
+     * Пишет содержимое отсоединённой секции в {@code out} в CSV с заголовком и возвращает число строк.
+     */
+    public long export(MonthlyPartition partition, OutputStream out) {
+        var sql = "COPY " + partition.name() + " TO STDOUT (FORMAT csv, HEADER)";
+        return jdbcTemplate.getJdbcOperations().execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(sql, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Дописывает в журнал файл архива и удаляет выгруженную секцию.
+     */
+    @Transactional
+    public void markArchived(MonthlyPartition partition, long rows, Path file) {
+        var sql = """
+                UPDATE engagement_archive
+                SET row_count = :rows,
+                    file = :file,
+                    archived = now()
+                WHERE partition_name = :name
+                """;
+        var params = new MapSqlParameterSource()
+                .addValue("name", partition.name())
+                .addValue("rows", rows)
+                .addValue("file", file.toString());
+        jdbcTemplate.update(sql, params);
+        jdbcTemplate.getJdbcOperations().execute("DROP TABLE " + partition.name());
+    }
+
+    /**
+     * Конец последнего заархивированного месяца: строки публикаций, созданных раньше, выгружены из базы
+     * или выгружаются и уже не меняются.
+     */
+    public Optional<Instant> findArchiveHorizon() {
+        var sql = "SELECT MAX(range_to) FROM engagement_archive";
+        var horizon = jdbcTemplate.queryForObject(sql, new MapSqlParameterSource(), Timestamp.class);
+        return Optional.ofNullable(horizon).map(Timestamp::toInstant);
+    }
+
+    /**
+     * Публикации из {@code feedIds}, строки которых в {@code table} выгружены в архив или выгружаются.
+     */
+    public Set<UUID> findArchivedFeeds(String table, Collection<? extends UUID> feedIds) {
+        var sql = """
+                SELECT id
+                FROM feed
+                WHERE id = ANY(CAST(:ids AS uuid[]))
+                  AND engagement_archived(:table, created)
+                """;
+        var params = new MapSqlParameterSource()
+                .addValue("ids", SqlArrays.uuids(feedIds))
+                .addValue("table", requireTable(table));
+
+        var archived = new HashSet<UUID>();
+        jdbcTemplate.query(sql, params, (RowCallbackHandler) rs -> archived.add(rs.getObject("id", UUID.class)));
+        return archived;
+    }
+
+    private static String requireTable(String table) {
+        if (!PARTITIONED_TABLES.contains(table)) {
+            throw new IllegalArgumentException("Table is not partitioned by month: " + table);
+        }
+        return table;
+    }
+
+    /**
+     * @param attached секция ещё присоединена к {@code parent}
+     */
+    public record MonthlyPartition(String name, String parent, YearMonth month, boolean attached) {
+
+        static MonthlyPartition of(String name, boolean attached) {
+            var matcher = PARTITION_NAME.matcher(name);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Not a monthly partition: " + name);
+            }
+            var month = YearMonth.of(Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(3)));
+            return new MonthlyPartition(name, requireTable(matcher.group(1)), month, attached);
+        }
+
+        public Instant from() {
+            return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        }
+
+        public Instant to() {
+            return month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        }
+    }
+}
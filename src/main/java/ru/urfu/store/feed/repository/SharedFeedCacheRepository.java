@@ -0,0 +1,138 @@
+package ru.urfu.store.feed.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Общий уровень кэша публикаций в таблице {@code feed_cache} и рассылка сбросов через {@code NOTIFY}.
+ * Хранит сериализованный {@code FeedDto} вместе с {@code feed.version}, из которой он построен.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SharedFeedCacheRepository {
+
+    public static final String INVALIDATION_CHANNEL = "feed_cache_invalidation";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Записи не старше {@code ttl} по часам базы, чтобы расхождение часов экземпляров не влияло на срок жизни.
+     */
+    public Map<UUID, Entry> findAll(Collection<? extends UUID> ids, Duration ttl) {
+        var sql = """
+                SELECT feed_id, version, payload
+                FROM feed_cache
+                WHERE feed_id = ANY(CAST(:ids AS uuid[]))
+                  AND cached > now() - :ttlMillis * interval '1 millisecond'
+                """;
+
+        var params = new MapSqlParameterSource()
+                .addValue("ids", SqlArrays.uuids(ids))
+                .addValue("ttlMillis", ttl.toMillis());
+
+        var entries = new HashMap<UUID, Entry>();
+        jdbcTemplate.query(sql, params, (RowCallbackHandler) rs -> entries.put(
+                rs.getObject("feed_id", UUID.class),
+                new Entry(rs.getLong("version"), rs.getString("payload"))));
+        return entries;
+    }
+
+    /**
+     * Сохраняет записи, только если их версия и {@code modified} совпадают с текущими в {@code feed}: копия,
+     * прочитанная до параллельного изменения или с отстающей реплики, в общий кэш не попадает. Версия
+     * меняется только с текстом, а {@code modified} — и со счётчиками. Более новую запись с большей версией
+     * не перезаписывает.
+     */
+    public void putAll(Map<UUID, Candidate> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        var sql = """
+                INSERT INTO feed_cache (feed_id, version, payload, cached)
+                SELECT f.id, f.version, :payload, now()
+                FROM feed f
+                WHERE f.id = :feedId AND f.version = :version AND f.modified = :modified
+                ON CONFLICT (feed_id) DO UPDATE
+                SET version = EXCLUDED.version,
+                    payload = EXCLUDED.payload,
+                    cached = EXCLUDED.cached
+                WHERE feed_cache.version <= EXCLUDED.version
+                """;
+
+        var batch = entries.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("feedId", entry.getKey())
+                        .addValue("version", entry.getValue().version())
+                        .addValue("modified", Timestamp.from(entry.getValue().modified()))
+                        .addValue("payload", entry.getValue().payload()))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(sql, batch);
+    }
+
+    public void evict(Collection<? extends UUID> ids) {
+        var sql = "DELETE FROM feed_cache WHERE feed_id = ANY(CAST(:ids AS uuid[]))";
+        jdbcTemplate.update(sql, new MapSqlParameterSource().addValue("ids", SqlArrays.uuids(ids)));
+    }
+
+    public int purgeExpired(Duration ttl) {
+        var sql = "DELETE FROM feed_cache WHERE cached <= now() - :ttlMillis * interval '1 millisecond'";
+        return jdbcTemplate.update(sql, new MapSqlParameterSource().addValue("ttlMillis", ttl.toMillis()));
+    }
+
+    /**
+     * Сообщает всем экземплярам, что копии публикаций с версией меньше указанной устарели.
+     * {@code NOTIFY} доставляется только после фиксации текущей транзакции.
+     */
+    public void notifyInvalidation(Invalidation invalidation) {
+        var sql = "SELECT pg_notify('" + INVALIDATION_CHANNEL + "', :payload)";
+        var params = new MapSqlParameterSource().addValue("payload", invalidation.encode());
+        jdbcTemplate.query(sql, params, (RowCallbackHandler) rs -> {
+        });
+    }
+
+    public record Entry(long version, String payload) {
+    }
+
+    /**
+     * Копия для записи в общий уровень вместе с {@code feed.modified} строки, из которой она построена.
+     */
+    public record Candidate(long version, Instant modified, String payload) {
+    }
+
+    /**
+     * Сброс публикации {@code feedId}: копии с версией меньше {@code minVersion} устарели.
+     * Для удалённой публикации {@code minVersion} — {@link Long#MAX_VALUE}.
+     */
+    public record Invalidation(UUID feedId, long minVersion) {
+
+        private static final String SEPARATOR = ":";
+
+        public String encode() {
+            return feedId + SEPARATOR + minVersion;
+        }
+
+        public static Invalidation decode(String payload) {
+            var separatorIndex = payload.indexOf(SEPARATOR);
+            if (separatorIndex < 0) {
+                throw new IllegalArgumentException("Invalid cache invalidation: " + payload);
+            }
+            return new Invalidation(
+                    UUID.fromString(payload.substring(0, separatorIndex)),
+                    Long.parseLong(payload.substring(separatorIndex + 1))
+            );
+        }
+    }
+}
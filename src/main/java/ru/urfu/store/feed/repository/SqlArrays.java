@@ -0,0 +1,18 @@
+package ru.urfu.store.feed.repository;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Параметры-массивы для {@code = ANY(CAST(:ids AS uuid[]))}: драйвер гарантированно умеет
+ * передавать {@code String[]}, а приведение к {@code uuid[]} делает сама база.
+ */
+final class SqlArrays {
+
+    private SqlArrays() {
+    }
+
+    static String[] uuids(Collection<? extends UUID> ids) {
+        return ids.stream().map(UUID::toString).toArray(String[]::new);
+    }
+}
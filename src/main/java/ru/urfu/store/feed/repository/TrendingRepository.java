@@ -0,0 +1,116 @@
+package ru.urfu.store.feed.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+@Repository
+@RequiredArgsConstructor
+public class TrendingRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Сливает оценки экземпляра, приведённые к моменту {@code takenAt}, со снимком в базе. Каждый экземпляр
+     * видит только свои события, поэтому снимок не заменяется: для каждой публикации остаётся большая
+     * из новой оценки и прежней, затухшей до {@code takenAt}. Строки, затухшие ниже {@code minScore}, удаляются.
+     * Строки вставляются в порядке {@code feed_id}, чтобы одновременные снимки двух экземпляров не взаимоблокировались.
+     */
+    @Transactional
+    public void saveSnapshot(Map<UUID, Double> scores, Instant takenAt, double decayRate, double minScore) {
+        var sql = """
+                INSERT INTO feed_trending_snapshot (feed_id, score, taken_at)
+                VALUES (:feedId, :score, :takenAt)
+                ON CONFLICT (feed_id) DO UPDATE
+                    SET score    = GREATEST(EXCLUDED.score, feed_trending_snapshot.score
+                        * exp(-:decayRate * EXTRACT(EPOCH FROM (EXCLUDED.taken_at - feed_trending_snapshot.taken_at)))),
+                        taken_at = EXCLUDED.taken_at
+                """;
+        var timestamp = Timestamp.from(takenAt);
+        var batch = new TreeMap<>(scores).entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("feedId", entry.getKey())
+                        .addValue("score", entry.getValue())
+                        .addValue("takenAt", timestamp)
+                        .addValue("decayRate", decayRate))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(sql, batch);
+
+        var cleanup = """
+                DELETE FROM feed_trending_snapshot
+                WHERE score * exp(-:decayRate * EXTRACT(EPOCH FROM (:takenAt - taken_at))) < :minScore
+                """;
+        var params = new MapSqlParameterSource()
+                .addValue("takenAt", timestamp)
+                .addValue("decayRate", decayRate)
+                .addValue("minScore", minScore);
+        jdbcTemplate.update(cleanup, params);
+    }
+
+    public Instant findSnapshotTime() {
+        var sql = "SELECT MAX(taken_at) FROM feed_trending_snapshot";
+        var takenAt = jdbcTemplate.queryForObject(sql, new MapSqlParameterSource(), Timestamp.class);
+        return takenAt != null ? takenAt.toInstant() : null;
+    }
+
+    /**
+     * Снимок с оценками, приведёнными к моменту {@code at}: строки, записанные разными экземплярами,
+     * сняты в разное время.
+     */
+    public Map<UUID, Double> findSnapshot(double decayRate, Instant at) {
+        var sql = """
+                SELECT feed_id, score * exp(-:decayRate * EXTRACT(EPOCH FROM (:at - taken_at))) AS score
+                FROM feed_trending_snapshot
+                """;
+        var params = new MapSqlParameterSource()
+                .addValue("decayRate", decayRate)
+                .addValue("at", Timestamp.from(at));
+
+        var scores = new HashMap<UUID, Double>();
+        jdbcTemplate.query(sql, params,
+                (RowCallbackHandler) rs -> scores.put(rs.getObject("feed_id", UUID.class), rs.getDouble("score")));
+        return scores;
+    }
+
+    /**
+     * Считает оценки по лайкам и комментариям, появившимся после {@code since}: каждое событие
+     * весит {@code weight * exp(-decayRate * возраст_в_секундах)}. Просмотры хранятся без времени,
+     * поэтому в пересчёт не входят.
+     */
+    public Map<UUID, Double> computeScores(double likeWeight, double commentWeight, double decayRate, Instant since) {
+        var sql = """
+                SELECT feed_id, SUM(weight * exp(-:decayRate * EXTRACT(EPOCH FROM (now() - created)))) AS score
+                FROM (
+                    SELECT feed_id, created, CAST(:likeWeight AS double precision) AS weight
+                    FROM user_like
+                    WHERE created > :since
+                    UNION ALL
+                    SELECT feed_id, created, CAST(:commentWeight AS double precision) AS weight
+                    FROM comment
+                    WHERE created > :since
+                ) events
+                GROUP BY feed_id
+                """;
+
+        var params = new MapSqlParameterSource()
+                .addValue("likeWeight", likeWeight)
+                .addValue("commentWeight", commentWeight)
+                .addValue("decayRate", decayRate)
+                .addValue("since", Timestamp.from(since));
+
+        var scores = new HashMap<UUID, Double>();
+        jdbcTemplate.query(sql, params,
+                (RowCallbackHandler) rs -> scores.put(rs.getObject("feed_id", UUID.class), rs.getDouble("score")));
+        return scores;
+    }
+}
@@ -3,9 +3,18 @@ package ru.urfu.store.feed.repository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSourceUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import ru.urfu.store.feed.model.UserStar;
+import ru.urfu.store.feed.model.WriteOutcome;
+import ru.urfu.store.feed.model.dto.PageCursor;
+import ru.urfu.store.feed.model.dto.Paging;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
 import java.util.UUID;
 
 @Repository
@@ -14,37 +23,145 @@ public class UserStarRepository {
 
     private final NamedParameterJdbcTemplate jdbcTemplate;
 
+    /**
+     * Вместе с отметкой сохраняет {@code created} публикации: по нему избранное листается
+     * индексом {@code (user_id, feed_created, feed_id)} без обращения к {@code feed}.
+     */
     @Transactional
-    public void star(UUID userId, UUID feedId) {
+    public WriteOutcome star(UUID userId, UUID feedId) {
         var sql = """
-                INSERT INTO user_star (user_id, feed_id)
-                VALUES (:userId, :feedId)
-                ON CONFLICT (user_id, feed_id) DO NOTHING
+                WITH target AS (
+                    SELECT id, created FROM feed WHERE id = :feedId
+                ), inserted AS (
+                    INSERT INTO user_star (user_id, feed_id, feed_created)
+                    SELECT :userId, id, created FROM target
+                    ON CONFLICT (user_id, feed_id) DO NOTHING
+                    RETURNING feed_id
+                ), counted AS (
+                    UPDATE feed
+                    SET stars_count = stars_count + 1,
+                        modified = now()
+                    WHERE id IN (SELECT feed_id FROM inserted)
+                )
+                SELECT EXISTS (SELECT 1 FROM target) AS feed_exists,
+                       EXISTS (SELECT 1 FROM inserted) AS changed
                 """;
 
         var params = new MapSqlParameterSource()
                 .addValue("userId", userId)
                 .addValue("feedId", feedId);
 
-        jdbcTemplate.update(sql, params);
+        return jdbcTemplate.queryForObject(sql, params, (rs, rowNum) ->
+                WriteOutcome.of(rs.getBoolean("feed_exists"), rs.getBoolean("changed")));
     }
 
     @Transactional
-    public void unStar(UUID userId, UUID feedId) {
-        var sql = "DELETE FROM user_star WHERE user_id = :userId AND feed_id = :feedId";
+    public WriteOutcome unStar(UUID userId, UUID feedId) {
+        var sql = """
+                WITH target AS (
+                    SELECT id FROM feed WHERE id = :feedId
+                ), deleted AS (
+                    DELETE FROM user_star
+                    WHERE user_id = :userId AND feed_id IN (SELECT id FROM target)
+                    RETURNING feed_id
+                ), counted AS (
+                    UPDATE feed
+                    SET stars_count = stars_count - 1,
+                        modified = now()
+                    WHERE id IN (SELECT feed_id FROM deleted)
+                )
+                SELECT EXISTS (SELECT 1 FROM target) AS feed_exists,
+                       EXISTS (SELECT 1 FROM deleted) AS changed
+                """;
         var params = new MapSqlParameterSource()
                 .addValue("userId", userId)
                 .addValue("feedId", feedId);
 
-        jdbcTemplate.update(sql, params);
+        return jdbcTemplate.queryForObject(sql, params, (rs, rowNum) ->
+                WriteOutcome.of(rs.getBoolean("feed_exists"), rs.getBoolean("changed")));
     }
 
+    /**
+     * Пакетное добавление в избранное без обновления {@code stars_count}:
+     * вызывающий код сам применяет приращения по возвращённым числам вставленных строк.
+     * Для уже удалённой публикации строка не вставляется.
+     */
     @Transactional
-    public void delete(UUID feedId) {
-        var sql = "DELETE FROM user_star WHERE feed_id = :feedId";
+    public int[] starAll(List<UserStar> stars) {
+        var sql = """
+                INSERT INTO user_star (user_id, feed_id, feed_created)
+                SELECT :userId, id, created FROM feed WHERE id = :feedId
+                ON CONFLICT (user_id, feed_id) DO NOTHING
+                """;
+
+        return jdbcTemplate.batchUpdate(sql, SqlParameterSourceUtils.createBatch(stars));
+    }
+
+    public Paging<UUID> findStarred(UUID userId, Integer limit, Integer offset) {
+        var sql = """
+                SELECT feed_id, feed_created FROM user_star
+                WHERE user_id = :userId
+                ORDER BY feed_created DESC, feed_id DESC
+                LIMIT :limit OFFSET :offset
+                """;
+
         var params = new MapSqlParameterSource()
-                .addValue("feedId", feedId);
+                .addValue("userId", userId)
+                .addValue("limit", limit + 1)
+                .addValue("offset", offset);
+
+        return page(jdbcTemplate.query(sql, params, this::mapStarred), limit, offset);
+    }
+
+    public Paging<UUID> findStarredAfter(UUID userId, PageCursor cursor, Integer limit) {
+        var sql = """
+                SELECT feed_id, feed_created FROM user_star
+                WHERE user_id = :userId AND (feed_created, feed_id) < (:created, :id)
+                ORDER BY feed_created DESC, feed_id DESC
+                LIMIT :limit
+                """;
+
+        var params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("created", Timestamp.from(cursor.created()))
+                .addValue("id", cursor.id())
+                .addValue("limit", limit + 1);
+
+        return page(jdbcTemplate.query(sql, params, this::mapStarred), limit, null);
+    }
+
+    private PageCursor mapStarred(ResultSet rs, int rowNum) throws SQLException {
+        return new PageCursor(rs.getTimestamp("feed_created").toInstant(), rs.getObject("feed_id", UUID.class));
+    }
+
+    /**
+     * Страница id избранных публикаций в порядке ленты. Курсор тот же, что у {@code GET /}:
+     * {@code created} публикации и её id.
+     */
+    private Paging<UUID> page(List<PageCursor> rows, Integer limit, Integer offset) {
+        var hasMore = rows.size() > limit;
+        var starred = hasMore ? rows.subList(0, limit) : rows;
+        var nextCursor = hasMore ? starred.getLast().encode() : null;
+
+        var page = new Paging<>(null, limit, offset, starred.stream().map(PageCursor::id).toList(), nextCursor);
+        page.setHasMore(hasMore);
+        return page;
+    }
+
+    /**
+     * Удаляет не больше {@code limit} отметок избранного публикации и возвращает их число.
+     */
+    @Transactional
+    public int delete(UUID feedId, int limit) {
+        var sql = """
+                DELETE FROM user_star
+                WHERE feed_id = :feedId
+                  AND user_id IN (SELECT user_id FROM user_star WHERE feed_id = :feedId LIMIT :limit)
+                """;
+        var params = new MapSqlParameterSource()
+                .addValue("feedId", feedId)
+                .addValue("limit", limit);
 
-        jdbcTemplate.update(sql, params);
+        return jdbcTemplate.update(sql, params);
     }
 }
\ No newline at end of file
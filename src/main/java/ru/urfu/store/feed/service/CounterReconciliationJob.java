@@ -0,0 +1,75 @@
+package ru.urfu.store.feed.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.urfu.store.feed.model.dto.PageCursor;
+import ru.urfu.store.feed.repository.FeedRepository;
+import ru.urfu.store.feed.repository.PartitionRepository;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Сверяет денормализованные счётчики {@code feed} с таблицами лайков, избранного и комментариев.
+ * Каждая пачка обрабатывается в своей транзакции под блокировкой строк публикаций,
+ * поэтому параллельные лайки не теряются и не держат долгих блокировок.
+ * <p>
+ * Публикации месяцев, секции которых уже выгружены в архив ({@link PartitionMaintenanceJob}), не сверяются:
+ * их счётчики включают выгруженные строки.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CounterReconciliationJob {
+
+    /**
+     * Порядок {@code (created, id)} как в Postgres: там uuid сравниваются побайтно, без знака.
+     */
+    private static final Comparator<PageCursor> BY_CREATED = Comparator.comparing(PageCursor::created)
+            .thenComparing(PageCursor::id, Comparator
+                    .comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+                    .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned));
+
+    private final FeedRepository feedRepository;
+    private final PartitionRepository partitionRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${feed.counters.reconcile-batch-size}")
+    private int batchSize;
+
+    @Scheduled(cron = "${feed.counters.reconcile-cron}")
+    public void reconcile() {
+        var after = partitionRepository.findArchiveHorizon()
+                .map(horizon -> new PageCursor(horizon, new UUID(0, 0)))
+                .orElse(null);
+        var fixed = 0;
+        List<PageCursor> batch;
+        do {
+            var last = after;
+            var fixedInBatch = new int[1];
+            batch = transactionTemplate.execute(status -> {
+                var feeds = feedRepository.lockBatchForReconciliation(last, batchSize);
+                if (!feeds.isEmpty()) {
+                    fixedInBatch[0] = feedRepository.reconcileCounters(feeds);
+                }
+                return feeds;
+            });
+            fixed += fixedInBatch[0];
+            if (batch != null && !batch.isEmpty()) {
+                after = Collections.max(batch, BY_CREATED);
+            }
+        } while (batch != null && batch.size() == batchSize);
+
+        if (fixed > 0) {
+            log.warn("Counter reconciliation fixed {} feeds", fixed);
+        } else {
+            log.info("Counter reconciliation found no drift");
+        }
+    }
+}
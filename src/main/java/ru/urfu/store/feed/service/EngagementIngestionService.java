@@ -0,0 +1,203 @@
+package ru.urfu.store.feed.service;
+
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.urfu.store.feed.model.ChangeEvent;
+import ru.urfu.store.feed.model.ChangeType;
+import ru.urfu.store.feed.model.Comment;
+import ru.urfu.store.feed.model.FeedCounterDelta;
+import ru.urfu.store.feed.model.UserLike;
+import ru.urfu.store.feed.model.UserStar;
+import ru.urfu.store.feed.model.dto.*;
+import ru.urfu.store.feed.repository.CommentRepository;
+import ru.urfu.store.feed.repository.FeedRepository;
+import ru.urfu.store.feed.repository.OutboxRepository;
+import ru.urfu.store.feed.repository.PartitionRepository;
+import ru.urfu.store.feed.repository.UserStarRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Массовая загрузка лайков, избранного и комментариев из внешней шины событий.
+ * Существование публикаций проверяется одним запросом на всю пачку, вставки идут
+ * через JDBC batch, а счётчики публикаций обновляются одним запросом в конце.
+ * Комментарий проверяется теми же ограничениями, что и {@link CommentRequest} в {@code POST /comment},
+ * и при нарушении получает статус {@link EngagementStatus#INVALID}.
+ */
+@Service
+@RequiredArgsConstructor
+public class EngagementIngestionService {
+
+    private final FeedRepository feedRepository;
+    private final CommentRepository commentRepository;
+    private final UserStarRepository userStarRepository;
+    private final OutboxRepository outboxRepository;
+    private final PartitionRepository partitionRepository;
+    private final FeedCache feedCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Validator validator;
+
+    @Transactional
+    public BulkEngagementResponse ingest(List<EngagementEvent> events) {
+        var existingIds = feedRepository.findExistingIds(events.stream()
+                .map(EngagementEvent::getFeedId)
+                .collect(Collectors.toSet()));
+
+        var results = new EngagementResult[events.size()];
+        var likeIndexes = new ArrayList<Integer>();
+        var starIndexes = new ArrayList<Integer>();
+        var commentIndexes = new ArrayList<Integer>();
+        var likes = new ArrayList<UserLike>();
+        var stars = new ArrayList<UserStar>();
+        var comments = new ArrayList<Comment>();
+
+        for (var i = 0; i < events.size(); i++) {
+            var event = events.get(i);
+            if (!existingIds.contains(event.getFeedId())) {
+                results[i] = new EngagementResult(i, EngagementStatus.FEED_NOT_FOUND, null);
+                continue;
+            }
+            switch (event.getType()) {
+                case LIKE -> {
+                    likeIndexes.add(i);
+                    likes.add(new UserLike(event.getUserId(), event.getFeedId()));
+                }
+                case STAR -> {
+                    starIndexes.add(i);
+                    stars.add(new UserStar(event.getUserId(), event.getFeedId()));
+                }
+                case COMMENT -> {
+                    if (!isValidComment(event)) {
+                        results[i] = new EngagementResult(i, EngagementStatus.INVALID, null);
+                        continue;
+                    }
+                    commentIndexes.add(i);
+                    comments.add(Comment.builder()
+                            .id(UUID.randomUUID())
+                            .text(event.getText())
+                            .userId(event.getUserId())
+                            .feedId(event.getFeedId())
+                            .build());
+                }
+            }
+        }
+
+        var changes = new ArrayList<ChangeEvent>();
+        var deltas = new HashMap<UUID, FeedCounterDelta>();
+        if (!likes.isEmpty()) {
+            var inserted = feedRepository.insertLikes(likes);
+            var archived = findArchived(PartitionRepository.LIKES,
+                    likes.stream().map(UserLike::getFeedId).toList(), inserted);
+            for (var j = 0; j < inserted.length; j++) {
+                var feedId = likes.get(j).getFeedId();
+                if (inserted[j] == 0 && archived.contains(feedId)) {
+                    results[likeIndexes.get(j)] = new EngagementResult(
+                            likeIndexes.get(j), EngagementStatus.FEED_ARCHIVED, null);
+                    continue;
+                }
+                results[likeIndexes.get(j)] = applied(likeIndexes.get(j), inserted[j], null);
+                addDelta(deltas, feedId, new FeedCounterDelta(inserted[j] > 0 ? 1 : 0, 0, 0));
+                if (inserted[j] > 0) {
+                    changes.add(ChangeEvent.of(ChangeType.FEED_LIKED, feedId, likes.get(j).getUserId(), null));
+                }
+            }
+        }
+        if (!stars.isEmpty()) {
+            var inserted = userStarRepository.starAll(stars);
+            for (var j = 0; j < inserted.length; j++) {
+                var feedId = stars.get(j).getFeedId();
+                results[starIndexes.get(j)] = applied(starIndexes.get(j), inserted[j], null);
+                addDelta(deltas, feedId, new FeedCounterDelta(0, inserted[j] > 0 ? 1 : 0, 0));
+                if (inserted[j] > 0) {
+                    changes.add(ChangeEvent.of(ChangeType.FEED_STARRED, feedId, stars.get(j).getUserId(), null));
+                }
+            }
+        }
+        if (!comments.isEmpty()) {
+            var inserted = commentRepository.insertAll(comments);
+            var archived = findArchived(PartitionRepository.COMMENTS,
+                    comments.stream().map(Comment::getFeedId).toList(), inserted);
+            for (var j = 0; j < inserted.length; j++) {
+                var comment = comments.get(j);
+                if (inserted[j] == 0) {
+                    var status = archived.contains(comment.getFeedId()) ?
+                            EngagementStatus.FEED_ARCHIVED : EngagementStatus.FEED_NOT_FOUND;
+                    results[commentIndexes.get(j)] = new EngagementResult(commentIndexes.get(j), status, null);
+                    continue;
+                }
+                results[commentIndexes.get(j)] = applied(commentIndexes.get(j), inserted[j], comment.getId());
+                addDelta(deltas, comment.getFeedId(), new FeedCounterDelta(0, 0, 1));
+                changes.add(ChangeEvent.of(
+                        ChangeType.COMMENT_ADDED, comment.getFeedId(), comment.getUserId(), comment.getId()));
+            }
+        }
+
+        deltas.values().removeIf(FeedCounterDelta.ZERO::equals);
+        if (!deltas.isEmpty()) {
+            feedRepository.incrementCounters(deltas);
+            feedCache.evictFeeds(deltas.keySet());
+            deltas.forEach((feedId, delta) -> eventPublisher.publishEvent(FeedActivityEvent.counters(feedId, delta)));
+        }
+        outboxRepository.appendAll(changes);
+
+        return toResponse(Arrays.asList(results));
+    }
+
+    private boolean isValidComment(EngagementEvent event) {
+        var request = CommentRequest.builder()
+                .text(event.getText())
+                .userId(event.getUserId())
+                .feedId(event.getFeedId())
+                .build();
+        return validator.validate(request).isEmpty();
+    }
+
+    private EngagementResult applied(int index, int insertedRows, UUID commentId) {
+        var status = insertedRows > 0 ? EngagementStatus.APPLIED : EngagementStatus.DUPLICATE;
+        return new EngagementResult(index, status, commentId);
+    }
+
+    /**
+     * Какие из пропущенных вставок пропущены из-за архива: вставка не различает эти случаи,
+     * а месяц, однажды попавший в архив, из него не выходит.
+     */
+    private Set<UUID> findArchived(String table, List<UUID> feedIds, int[] inserted) {
+        var skipped = new HashSet<UUID>();
+        for (var j = 0; j < inserted.length; j++) {
+            if (inserted[j] == 0) {
+                skipped.add(feedIds.get(j));
+            }
+        }
+        return skipped.isEmpty() ? Set.of() : partitionRepository.findArchivedFeeds(table, skipped);
+    }
+
+    private void addDelta(Map<UUID, FeedCounterDelta> deltas, UUID feedId, FeedCounterDelta delta) {
+        deltas.merge(feedId, delta, FeedCounterDelta::plus);
+    }
+
+    private BulkEngagementResponse toResponse(List<EngagementResult> results) {
+        var byStatus = results.stream()
+                .collect(Collectors.groupingBy(EngagementResult::getStatus, Collectors.counting()));
+        var rejected = byStatus.getOrDefault(EngagementStatus.FEED_NOT_FOUND, 0L)
+                + byStatus.getOrDefault(EngagementStatus.FEED_ARCHIVED, 0L)
+                + byStatus.getOrDefault(EngagementStatus.INVALID, 0L);
+
+        return new BulkEngagementResponse(
+                byStatus.getOrDefault(EngagementStatus.APPLIED, 0L),
+                byStatus.getOrDefault(EngagementStatus.DUPLICATE, 0L),
+                rejected,
+                results
+        );
+    }
+}
@@ -0,0 +1,51 @@
+package ru.urfu.store.feed.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.urfu.store.feed.model.dto.exception.TooManyExportsException;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Ограничивает число одновременных выгрузок NDJSON значением {@code feed.comments.export.max-concurrent}.
+ * Выгрузка читает курсором в одной транзакции и держит соединение пула, пока клиент не дочитает
+ * ответ (до {@code spring.mvc.async.request-timeout}); без ограничения несколько медленных клиентов
+ * заняли бы весь пул, и остальные запросы ждали бы соединения.
+ */
+@Component
+public class ExportLimiter {
+
+    private final Semaphore permits;
+
+    public ExportLimiter(@Value("${feed.comments.export.max-concurrent}") int maxConcurrent) {
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Занимает место для выгрузки или, если мест нет, сразу отказывает, не дожидаясь освобождения.
+     */
+    public Permit acquire() {
+        if (!permits.tryAcquire()) {
+            throw new TooManyExportsException("Too many concurrent exports, retry later");
+        }
+        return new Permit(permits);
+    }
+
+    public static final class Permit implements AutoCloseable {
+
+        private final Semaphore permits;
+        private boolean released;
+
+        private Permit(Semaphore permits) {
+            this.permits = permits;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                permits.release();
+            }
+        }
+    }
+}
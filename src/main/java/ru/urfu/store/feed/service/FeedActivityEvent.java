@@ -0,0 +1,21 @@
+package ru.urfu.store.feed.service;
+
+import ru.urfu.store.feed.model.FeedCounterDelta;
+
+import java.util.UUID;
+
+/**
+ * Изменение счётчиков публикации: лайки, избранное и комментарии — после записи в базу,
+ * просмотры — после сброса {@link WatchCountBuffer}. Слушатели — {@link FeedCounterStream}
+ * и {@link TrendingService} — получают его после фиксации транзакции.
+ */
+public record FeedActivityEvent(UUID feedId, FeedCounterDelta counters, long views) {
+
+    public static FeedActivityEvent counters(UUID feedId, FeedCounterDelta counters) {
+        return new FeedActivityEvent(feedId, counters, 0);
+    }
+
+    public static FeedActivityEvent views(UUID feedId, long views) {
+        return new FeedActivityEvent(feedId, FeedCounterDelta.ZERO, views);
+    }
+}
@@ -0,0 +1,314 @@
+package ru.urfu.store.feed.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.urfu.store.feed.model.dto.FeedDto;
+import ru.urfu.store.feed.model.dto.FeedListItem;
+import ru.urfu.store.feed.model.dto.FeedView;
+import ru.urfu.store.feed.model.dto.Paging;
+import ru.urfu.store.feed.repository.FeedRepository;
+import ru.urfu.store.feed.repository.SharedFeedCacheRepository;
+import ru.urfu.store.feed.repository.SharedFeedCacheRepository.Candidate;
+import ru.urfu.store.feed.repository.SharedFeedCacheRepository.Invalidation;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Двухуровневый кэш публикаций по id и локальный кэш первых страниц общей ленты.
+ * <p>
+ * Ближний уровень — память экземпляра, общий — таблица {@code feed_cache}, из которой промахи
+ * одного экземпляра добирают копии, уже построенные другими. Записи обоих уровней живут не дольше
+ * {@code feed.cache.staleness}: на столько могут отставать счётчики.
+ * <p>
+ * Изменение заголовка или текста и удаление сбрасывают публикацию и страницы на всех экземплярах:
+ * {@code NOTIFY} уходит в транзакции изменения и доставляется с её фиксацией
+ * (см. {@link FeedCacheInvalidationListener}). Каждая копия помнит {@code feed.version}, из которой построена;
+ * после сброса экземпляр ещё {@code staleness} не держит у себя копии младше новой версии — например,
+ * прочитанные параллельным запросом до изменения. Общий уровень сверяет версию с {@code feed} при записи.
+ */
+@Slf4j
+@Component
+public class FeedCache {
+
+    private final FeedRepository feedRepository;
+    private final SharedFeedCacheRepository sharedCache;
+    private final ReadRouting readRouting;
+    private final JsonMapper jsonMapper;
+    private final Cache<UUID, Versioned> feeds;
+    private final Cache<UUID, Long> minVersions;
+    private final Cache<PageKey, Paging<FeedListItem>> pages;
+    private final int hotPages;
+    private final Duration staleness;
+    private final boolean sharedEnabled;
+
+    public FeedCache(
+            FeedRepository feedRepository,
+            SharedFeedCacheRepository sharedCache,
+            ReadRouting readRouting,
+            JsonMapper jsonMapper,
+            @Value("${feed.cache.max-size}") long maxSize,
+            @Value("${feed.cache.staleness}") Duration staleness,
+            @Value("${feed.cache.hot-pages}") int hotPages,
+            @Value("${feed.cache.shared.enabled}") boolean sharedEnabled,
+            MeterRegistry meterRegistry
+    ) {
+        this.feedRepository = feedRepository;
+        this.sharedCache = sharedCache;
+        this.readRouting = readRouting;
+        this.jsonMapper = jsonMapper;
+        this.feeds = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(staleness)
+                .recordStats()
+                .build();
+        this.minVersions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(staleness)
+                .build();
+        this.pages = Caffeine.newBuilder()
+                .maximumSize(hotPages * 10L)
+                .expireAfterWrite(staleness)
+                .recordStats()
+                .build();
+        this.hotPages = hotPages;
+        this.staleness = staleness;
+        this.sharedEnabled = sharedEnabled;
+
+        CaffeineCacheMetrics.monitor(meterRegistry, feeds, "feed.byId");
+        CaffeineCacheMetrics.monitor(meterRegistry, pages, "feed.pages");
+    }
+
+    public Optional<FeedDto> getFeed(UUID id) {
+        return Optional.ofNullable(getFeeds(List.of(id)).get(id));
+    }
+
+    /**
+     * Возвращает найденные публикации; отсутствующие в памяти догружаются одним запросом к общему уровню
+     * и одним к {@code feed}, а не найденные в базе в результат не попадают.
+     * <p>
+     * Загрузка идёт вне Caffeine: функция {@code get} выполняется под блокировкой корзины
+     * {@code ConcurrentHashMap}, и виртуальный поток держал бы на время запроса свой поток-носитель,
+     * а другие запросы к той же корзине ждали бы его. Поэтому одновременные промахи по одной публикации
+     * читают её из базы каждый сам. Так же устроены страницы в {@link #getPage}.
+     */
+    public Map<UUID, FeedDto> getFeeds(Collection<UUID> ids) {
+        var result = new HashMap<UUID, FeedDto>(ids.size());
+        var missing = new HashSet<UUID>();
+        for (var id : ids) {
+            var feed = feeds.getIfPresent(id);
+            if (feed != null) {
+                result.put(id, feed.feed());
+            } else {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        load(missing).forEach((id, feed) -> {
+            feeds.put(id, feed);
+            dropIfStale(id, feed);
+            result.put(id, feed.feed());
+        });
+        return result;
+    }
+
+    /**
+     * Публикации читаются с той базы, которую выбрал вызывающий (см. {@link ReadRouting}), а общий уровень —
+     * всегда с основной: {@code feed_cache} не реплицируется.
+     */
+    private Map<UUID, Versioned> load(Set<? extends UUID> ids) {
+        var result = new HashMap<UUID, Versioned>(ids.size());
+        var missing = new HashSet<UUID>(ids);
+        if (sharedEnabled) {
+            readRouting.primary(() -> sharedCache.findAll(ids, staleness)).forEach((id, entry) -> {
+                if (!isStale(id, entry.version())) {
+                    result.put(id, new Versioned(jsonMapper.readValue(entry.payload(), FeedDto.class), entry.version()));
+                    missing.remove(id);
+                }
+            });
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        var shared = new HashMap<UUID, Candidate>();
+        for (var feed : feedRepository.findAllByIds(missing)) {
+            var dto = FeedService.mapToDto(feed);
+            result.put(feed.getId(), new Versioned(dto, feed.getVersion()));
+            if (sharedEnabled) {
+                shared.put(feed.getId(), new Candidate(
+                        feed.getVersion(), feed.getModified().toInstant(), jsonMapper.writeValueAsString(dto)));
+            }
+        }
+        putShared(shared);
+        return result;
+    }
+
+    public Paging<FeedListItem> getPage(FeedView view, Integer limit, Integer offset,
+                                        Supplier<Paging<FeedListItem>> loader) {
+        if (!isHotPage(limit, offset)) {
+            return loader.get();
+        }
+        var key = new PageKey(view, limit, offset);
+        var page = pages.getIfPresent(key);
+        if (page == null) {
+            page = loader.get();
+            pages.put(key, page);
+        }
+        return page;
+    }
+
+    /**
+     * Сбрасывает только публикацию по id, здесь и в общем уровне: другие экземпляры увидят новые счётчики
+     * по истечении TTL своих копий, как и страницы.
+     */
+    public void evictFeed(UUID id) {
+        evictFeeds(List.of(id));
+    }
+
+    public void evictFeeds(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        var evicted = List.copyOf(ids);
+        evictShared(evicted);
+        afterCommit(() -> feeds.invalidateAll(evicted));
+    }
+
+    public void evictPages() {
+        afterCommit(pages::invalidateAll);
+    }
+
+    /**
+     * Сбрасывает публикацию версии младше {@code version} и все страницы на всех экземплярах —
+     * для изменений, которые нельзя показывать с задержкой.
+     */
+    public void invalidate(UUID id, long version) {
+        broadcast(new Invalidation(id, version));
+    }
+
+    public void invalidateDeleted(UUID id) {
+        broadcast(new Invalidation(id, Long.MAX_VALUE));
+    }
+
+    private void broadcast(Invalidation invalidation) {
+        sharedCache.notifyInvalidation(invalidation);
+        evictShared(List.of(invalidation.feedId()));
+        afterCommit(() -> apply(invalidation));
+    }
+
+    /**
+     * Применяет сброс, пришедший по {@code NOTIFY}, в том числе отправленный этим же экземпляром.
+     */
+    void apply(Invalidation invalidation) {
+        minVersions.asMap().merge(invalidation.feedId(), invalidation.minVersion(), Math::max);
+        feeds.invalidate(invalidation.feedId());
+        pages.invalidateAll();
+    }
+
+    /**
+     * Сбрасывает весь ближний уровень — когда сбросы от других экземпляров могли быть пропущены.
+     */
+    void invalidateAll() {
+        feeds.invalidateAll();
+        pages.invalidateAll();
+    }
+
+    @Scheduled(fixedDelayString = "${feed.cache.shared.purge-interval}")
+    public void purgeShared() {
+        if (sharedEnabled) {
+            sharedCache.purgeExpired(staleness);
+        }
+    }
+
+    private boolean isStale(UUID id, long version) {
+        var minVersion = minVersions.getIfPresent(id);
+        return minVersion != null && version < minVersion;
+    }
+
+    /**
+     * Сброс мог прийти между чтением копии из базы и её записью в кэш: тогда копия удаляется сразу после записи.
+     */
+    private void dropIfStale(UUID id, Versioned feed) {
+        if (isStale(id, feed.version())) {
+            feeds.asMap().remove(id, feed);
+        }
+    }
+
+    /**
+     * Общий уровень — только ускорение, поэтому неудачная запись в него не ломает чтение.
+     * Копия, прочитанная с отстающей реплики, в него не попадёт: версия и {@code modified} сверяются
+     * с {@code feed} основной базы, а {@code modified} меняется и вместе со счётчиками.
+     */
+    private void putShared(Map<UUID, Candidate> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            readRouting.primary(() -> {
+                sharedCache.putAll(entries);
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.warn("Failed to write shared feed cache: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Выполняется в транзакции изменения, до коммита. Параллельный запрос может успеть вернуть в общий уровень
+     * копию старой версии, но после сброса экземпляры её не примут: см. {@link #isStale}.
+     */
+    private void evictShared(Collection<UUID> ids) {
+        if (sharedEnabled) {
+            sharedCache.evict(ids);
+        }
+    }
+
+    private boolean isHotPage(Integer limit, Integer offset) {
+        return limit > 0 && offset % limit == 0 && offset / limit < hotPages;
+    }
+
+    /**
+     * Внутри транзакции сброс откладывается до коммита, иначе параллельный запрос может
+     * успеть положить в кэш ещё не изменённые данные.
+     */
+    private void afterCommit(Runnable eviction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eviction.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                eviction.run();
+            }
+        });
+    }
+
+    private record Versioned(FeedDto feed, long version) {
+    }
+
+    private record PageKey(FeedView view, Integer limit, Integer offset) {
+    }
+}
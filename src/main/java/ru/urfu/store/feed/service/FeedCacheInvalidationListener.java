@@ -0,0 +1,107 @@
+package ru.urfu.store.feed.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.urfu.store.feed.repository.SharedFeedCacheRepository;
+import ru.urfu.store.feed.repository.SharedFeedCacheRepository.Invalidation;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Слушает сбросы кэша от всех экземпляров ({@code LISTEN feed_cache_invalidation}) и применяет их
+ * к {@link FeedCache}. Соединение отдельное от пула: оно занято всё время работы сервиса.
+ * <p>
+ * Пока соединения нет, сбросы теряются, поэтому после каждого (пере)подключения ближний уровень
+ * кэша очищается целиком.
+ */
+@Slf4j
+@Component
+public class FeedCacheInvalidationListener {
+
+    private static final int POLL_TIMEOUT_MILLIS = 1000;
+    private static final Duration RECONNECT_DELAY = Duration.ofSeconds(5);
+
+    private final FeedCache feedCache;
+    private final String url;
+    private final String username;
+    private final String password;
+
+    private volatile boolean running;
+    private Thread listener;
+
+    public FeedCacheInvalidationListener(
+            FeedCache feedCache,
+            @Value("${spring.datasource.url}") String url,
+            @Value("${spring.datasource.username}") String username,
+            @Value("${spring.datasource.password}") String password
+    ) {
+        this.feedCache = feedCache;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        listener = Thread.ofPlatform().name("feed-cache-listener").daemon().start(this::listen);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (listener != null) {
+            listener.join(POLL_TIMEOUT_MILLIS * 2L);
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try (var connection = DriverManager.getConnection(url, username, password)) {
+                try (var statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + SharedFeedCacheRepository.INVALIDATION_CHANNEL);
+                }
+                feedCache.invalidateAll();
+                log.info("Listening for feed cache invalidations");
+
+                var pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    var notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (var notification : notifications) {
+                        apply(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Feed cache invalidation listener disconnected, retrying in {}: {}",
+                        RECONNECT_DELAY, e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void apply(String payload) {
+        try {
+            feedCache.apply(Invalidation.decode(payload));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed feed cache invalidation: {}", payload);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package ru.urfu.store.feed.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.urfu.store.feed.model.Feed;
+import ru.urfu.store.feed.model.FeedCounterDelta;
+import ru.urfu.store.feed.model.dto.FeedCountersDto;
+import ru.urfu.store.feed.repository.FeedRepository;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Рассылка изменений счётчиков публикаций подписчикам SSE.
+ * <p>
+ * События {@link FeedActivityEvent} только складываются в приращения по публикации, если на неё
+ * кто-то подписан. Раз в {@code feed.stream.tick} по всем изменившимся публикациям одним запросом
+ * читаются текущие счётчики, событие сериализуется один раз и рассылается всем подписчикам.
+ * Отправка идёт в виртуальных потоках. Если подписчик ещё не принял прошлое событие, новое ждёт
+ * в его ячейке неотправленного и уходит сразу после прошлого; следующие события, пришедшие за это время,
+ * сливаются с ним: счётчики берутся последние, приращения складываются. Так медленный клиент
+ * получает не каждое событие, но никогда не остаётся с устаревшими значениями.
+ */
+@Slf4j
+@Component
+public class FeedCounterStream {
+
+    private static final String COUNTERS_EVENT = "counters";
+
+    private final FeedRepository feedRepository;
+    private final JsonMapper jsonMapper;
+    private final Duration timeout;
+
+    private final ConcurrentHashMap<UUID, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, Pending> pending = new ConcurrentHashMap<>();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+
+    public FeedCounterStream(
+            FeedRepository feedRepository,
+            JsonMapper jsonMapper,
+            @Value("${feed.stream.timeout}") Duration timeout
+    ) {
+        this.feedRepository = feedRepository;
+        this.jsonMapper = jsonMapper;
+        this.timeout = timeout;
+    }
+
+    public SseEmitter subscribe(UUID feedId, FeedCountersDto initial) {
+        var emitter = new SseEmitter(timeout.toMillis());
+        var subscriber = new Subscriber(emitter, new AtomicBoolean(), new AtomicReference<>());
+        subscribers.computeIfAbsent(feedId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+
+        Runnable unsubscribe = () -> subscribers.computeIfPresent(feedId, (id, feedSubscribers) -> {
+            feedSubscribers.remove(subscriber);
+            return feedSubscribers.isEmpty() ? null : feedSubscribers;
+        });
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+
+        offer(subscriber, new Update(initial, jsonMapper.writeValueAsString(initial)));
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivity(FeedActivityEvent event) {
+        if (!subscribers.containsKey(event.feedId())) {
+            return;
+        }
+        pending.merge(event.feedId(), new Pending(event.counters(), event.views()), Pending::plus);
+    }
+
+    @Scheduled(fixedDelayString = "${feed.stream.tick}")
+    public void tick() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        var deltas = new HashMap<UUID, Pending>();
+        for (var feedId : pending.keySet()) {
+            var delta = pending.remove(feedId);
+            if (delta != null && subscribers.containsKey(feedId)) {
+                deltas.put(feedId, delta);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        for (var feed : feedRepository.findAllByIds(deltas.keySet())) {
+            var feedSubscribers = subscribers.get(feed.getId());
+            if (feedSubscribers == null) {
+                continue;
+            }
+            var counters = toDto(feed, deltas.get(feed.getId()));
+            var update = new Update(counters, jsonMapper.writeValueAsString(counters));
+            for (var subscriber : feedSubscribers) {
+                offer(subscriber, update);
+            }
+        }
+    }
+
+    /**
+     * Комментарий SSE раз в {@code feed.stream.heartbeat}: без него закрытые клиентами соединения
+     * не обнаруживаются, пока по публикации нет активности. Занятому подписчику он не нужен.
+     */
+    @Scheduled(fixedDelayString = "${feed.stream.heartbeat}")
+    public void heartbeat() {
+        subscribers.values().forEach(feedSubscribers -> feedSubscribers.forEach(subscriber -> {
+            if (subscriber.sending().compareAndSet(false, true)) {
+                send(subscriber, SseEmitter.event().comment("heartbeat"));
+            }
+        }));
+    }
+
+    @PreDestroy
+    public void close() {
+        subscribers.values().forEach(feedSubscribers ->
+                feedSubscribers.forEach(subscriber -> subscriber.emitter().complete()));
+        senders.shutdown();
+    }
+
+    public static FeedCountersDto toDto(Feed feed, FeedCounterDelta counters, long views) {
+        return FeedCountersDto.builder()
+                .feedId(feed.getId())
+                .likesCount(feed.getLikesCount())
+                .starsCount(feed.getStarsCount())
+                .commentsCount(feed.getCommentsCount())
+                .watchCount(feed.getWatchCount())
+                .likesDelta(counters.likes())
+                .starsDelta(counters.stars())
+                .commentsDelta(counters.comments())
+                .watchDelta(views)
+                .build();
+    }
+
+    private static FeedCountersDto toDto(Feed feed, Pending delta) {
+        return toDto(feed, delta.counters(), delta.views());
+    }
+
+    /**
+     * Кладёт событие в ячейку неотправленного подписчика, сливая с уже лежащим там, и отправляет,
+     * если подписчик свободен.
+     */
+    private void offer(Subscriber subscriber, Update update) {
+        subscriber.unsent().accumulateAndGet(update, Update::merge);
+        drain(subscriber);
+    }
+
+    /**
+     * Событие кладётся в ячейку до проверки занятости, а отправитель проверяет ячейку после освобождения,
+     * поэтому хотя бы один из них увидит и событие, и свободного подписчика.
+     */
+    private void drain(Subscriber subscriber) {
+        while (subscriber.unsent().get() != null && subscriber.sending().compareAndSet(false, true)) {
+            var update = subscriber.unsent().getAndSet(null);
+            if (update != null) {
+                var data = update.data() != null ? update.data() : jsonMapper.writeValueAsString(update.counters());
+                send(subscriber, SseEmitter.event().name(COUNTERS_EVENT).data(data));
+                return;
+            }
+            subscriber.sending().set(false);
+        }
+    }
+
+    /**
+     * Отправляет событие подписчику, уже помеченному занятым.
+     */
+    private void send(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        senders.execute(() -> {
+            try {
+                subscriber.emitter().send(event);
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Dropping SSE subscriber: {}", e.getMessage());
+                subscriber.emitter().completeWithError(e);
+                return;
+            } finally {
+                subscriber.sending().set(false);
+            }
+            drain(subscriber);
+        });
+    }
+
+    private record Subscriber(SseEmitter emitter, AtomicBoolean sending, AtomicReference<Update> unsent) {
+    }
+
+    /**
+     * @param data {@code counters}, уже сериализованные для всех подписчиков, или {@code null} после слияния
+     */
+    record Update(FeedCountersDto counters, String data) {
+
+        /**
+         * Более позднее событие с приращениями обоих.
+         */
+        static Update merge(Update earlier, Update later) {
+            if (earlier == null) {
+                return later;
+            }
+            var merged = FeedCountersDto.builder()
+                    .feedId(later.counters().getFeedId())
+                    .likesCount(later.counters().getLikesCount())
+                    .starsCount(later.counters().getStarsCount())
+                    .commentsCount(later.counters().getCommentsCount())
+                    .watchCount(later.counters().getWatchCount())
+                    .likesDelta(sum(earlier.counters().getLikesDelta(), later.counters().getLikesDelta()))
+                    .starsDelta(sum(earlier.counters().getStarsDelta(), later.counters().getStarsDelta()))
+                    .commentsDelta(sum(earlier.counters().getCommentsDelta(), later.counters().getCommentsDelta()))
+                    .watchDelta(sum(earlier.counters().getWatchDelta(), later.counters().getWatchDelta()))
+                    .build();
+            return new Update(merged, null);
+        }
+
+        private static long sum(Long earlier, Long later) {
+            return (earlier != null ? earlier : 0) + (later != null ? later : 0);
+        }
+    }
+
+    private record Pending(FeedCounterDelta counters, long views) {
+
+        Pending plus(Pending other) {
+            return new Pending(counters.plus(other.counters), views + other.views);
+        }
+    }
+}
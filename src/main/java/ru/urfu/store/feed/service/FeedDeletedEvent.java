@@ -0,0 +1,9 @@
+package ru.urfu.store.feed.service;
+
+import java.util.UUID;
+
+/**
+ * Публикация удалена: публикуется в транзакции удаления.
+ */
+public record FeedDeletedEvent(UUID feedId) {
+}
@@ -0,0 +1,60 @@
+package ru.urfu.store.feed.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.urfu.store.feed.model.FeedDeletion;
+import ru.urfu.store.feed.repository.CommentRepository;
+import ru.urfu.store.feed.repository.FeedDeletionRepository;
+import ru.urfu.store.feed.repository.FeedRepository;
+import ru.urfu.store.feed.repository.UserStarRepository;
+
+/**
+ * Дочищает комментарии, лайки и избранное удалённых публикаций.
+ * <p>
+ * За один запуск удаляется не больше {@code feed.deletion.batch-size} строк одной публикации — в короткой
+ * транзакции, вместе с записью прогресса, поэтому после перезапуска работа продолжается с того же места.
+ * Публикация блокируется в очереди через {@code SKIP LOCKED}, так что экземпляры сервиса
+ * разбирают разные удаления.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FeedDeletionReaper {
+
+    private final FeedDeletionRepository feedDeletionRepository;
+    private final CommentRepository commentRepository;
+    private final FeedRepository feedRepository;
+    private final UserStarRepository userStarRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${feed.deletion.batch-size}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${feed.deletion.interval}")
+    public void reap() {
+        transactionTemplate.executeWithoutResult(status ->
+                feedDeletionRepository.lockNextPending().ifPresent(this::deleteBatch));
+    }
+
+    private void deleteBatch(FeedDeletion deletion) {
+        var feedId = deletion.getFeedId();
+        var comments = commentRepository.deleteByFeedId(feedId, deletion.getFeedCreated(), batchSize);
+        var likes = comments < batchSize ?
+                feedRepository.deleteLikes(feedId, deletion.getFeedCreated(), batchSize - comments) :
+                0;
+        var stars = comments + likes < batchSize ?
+                userStarRepository.delete(feedId, batchSize - comments - likes) :
+                0;
+
+        // Неполная пачка значит, что удалять больше нечего
+        var finished = comments + likes + stars < batchSize;
+        feedDeletionRepository.recordProgress(feedId, comments, likes, stars, finished);
+        if (finished) {
+            log.info("Finished deleting feed {}", feedId);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ru.urfu.store.feed.service;
+
+import org.springframework.util.DigestUtils;
+import ru.urfu.store.feed.model.dto.FeedListItem;
+import ru.urfu.store.feed.model.dto.Paging;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Слабые ETag и {@code Last-Modified} публикаций и страниц ленты. Просмотры в них не входят: иначе каждый опрос
+ * менял бы ETag и {@code 304} не случался бы никогда, поэтому {@code watchCount} в ответе
+ * {@code 304} может отставать — отсюда слабый, а не строгий ETag.
+ */
+public final class FeedEtags {
+
+    private FeedEtags() {
+    }
+
+    /**
+     * ETag публикации по уже собранному ответу: публикация берётся из кэша, и ETag по базе
+     * мог бы опередить закэшированное тело.
+     */
+    public static String feed(FeedListItem feed) {
+        var fingerprint = new StringBuilder();
+        append(fingerprint, feed);
+        return weak(fingerprint.toString());
+    }
+
+    /**
+     * ETag страницы по уже собранному ответу, как и {@link #feed}.
+     */
+    public static String page(Paging<? extends FeedListItem> page) {
+        var fingerprint = new StringBuilder()
+                .append(page.getTotalCount()).append(':')
+                .append(page.getTotalCountMode()).append(':')
+                .append(page.getHasMore()).append(':')
+                .append(page.getNextCursor());
+        for (var feed : page.getCurrentValues()) {
+            append(fingerprint.append('|'), feed);
+        }
+        return weak(fingerprint.toString());
+    }
+
+    /**
+     * {@code Last-Modified} публикации в миллисекундах или {@code -1}, если время неизвестно.
+     * Копии в общем кэше, записанные до появления {@code modified}, берут время правки или создания.
+     */
+    public static long lastModified(FeedListItem feed) {
+        var modified = Optional.ofNullable(feed.getModified())
+                .or(() -> Optional.ofNullable(feed.getUpdated()))
+                .or(() -> Optional.ofNullable(feed.getCreated()));
+        return modified.map(time -> time.toInstant().toEpochMilli()).orElse(-1L);
+    }
+
+    /**
+     * Самое позднее изменение публикаций страницы. Удаление публикации со страницы его не сдвигает,
+     * поэтому клиентам лучше проверять ETag: при {@code If-None-Match} заголовок {@code If-Modified-Since}
+     * не учитывается.
+     */
+    public static long lastModified(Paging<? extends FeedListItem> page) {
+        var result = -1L;
+        for (var feed : page.getCurrentValues()) {
+            result = Math.max(result, lastModified(feed));
+        }
+        return result;
+    }
+
+    private static void append(StringBuilder fingerprint, FeedListItem feed) {
+        fingerprint
+                .append(feed.getId()).append(':')
+                .append(feed.getUpdated() != null ? feed.getUpdated().toInstant() : null).append(':')
+                .append(feed.getLikesCount()).append(':')
+                .append(feed.getStarsCount()).append(':')
+                .append(feed.getCommentsCount()).append(':')
+                .append(feed.getLikedByMe()).append(':')
+                .append(feed.getStarredByMe());
+    }
+
+    private static String weak(String fingerprint) {
+        return "W/\"" + DigestUtils.md5DigestAsHex(fingerprint.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
@@ -1,17 +1,38 @@
 package ru.urfu.store.feed.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.urfu.store.feed.model.ChangeEvent;
+import ru.urfu.store.feed.model.ChangeType;
 import ru.urfu.store.feed.model.Comment;
 import ru.urfu.store.feed.model.Feed;
+import ru.urfu.store.feed.model.FeedCounterDelta;
+import ru.urfu.store.feed.model.FeedDeletion;
+import ru.urfu.store.feed.model.FeedSearchHit;
+import ru.urfu.store.feed.model.WriteOutcome;
 import ru.urfu.store.feed.model.dto.*;
+import ru.urfu.store.feed.model.dto.exception.FeedArchivedException;
 import ru.urfu.store.feed.model.dto.exception.ResourceNotFoundException;
 import ru.urfu.store.feed.repository.CommentRepository;
+import ru.urfu.store.feed.repository.FeedDeletionRepository;
 import ru.urfu.store.feed.repository.FeedRepository;
+import ru.urfu.store.feed.repository.FeedSearchRepository;
+import ru.urfu.store.feed.repository.OutboxRepository;
 import ru.urfu.store.feed.repository.UserStarRepository;
+import tools.jackson.databind.json.JsonMapper;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -20,7 +41,19 @@ public class FeedService {
     private final FeedRepository feedRepository;
     private final CommentRepository commentRepository;
     private final UserStarRepository userStarRepository;
+    private final WatchCountBuffer watchCountBuffer;
+    private final FeedCache feedCache;
+    private final TotalCountProvider totalCountProvider;
+    private final TrendingService trendingService;
+    private final FeedSearchRepository feedSearchRepository;
+    private final FeedDeletionRepository feedDeletionRepository;
+    private final OutboxRepository outboxRepository;
+    private final FeedCounterStream feedCounterStream;
+    private final ReadRouting readRouting;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JsonMapper jsonMapper;
 
+    @Transactional
     public FeedDto createFeed(CreateFeedRequest request) {
         var feed = Feed.builder()
                 .title(request.getTitle())
@@ -28,28 +61,97 @@ public class FeedService {
                 .build();
 
         var savedFeed = feedRepository.save(feed);
+        outboxRepository.append(ChangeEvent.of(ChangeType.FEED_CREATED, savedFeed.getId(), null, null));
+        feedCache.evictPages();
         return mapToDto(savedFeed);
     }
 
-    public FeedDto getFeed(UUID id) {
-        feedRepository.incrementWatchCount(id);
+    public FeedDto getFeed(UUID id, UUID userId) {
+        return readRouting.read(userId, () -> withUserFlags(List.of(feedCache.getFeed(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Feed not found with id: " + id))), userId).getFirst());
+    }
 
+    /**
+     * Просмотр засчитывается, только если публикация отдана с телом, а не ответом {@code 304}.
+     */
+    public void recordView(UUID id) {
+        watchCountBuffer.record(id);
+    }
 
-        var feed = feedRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Feed not found with id: " + id));
+    public FeedBatchResponse getFeeds(List<UUID> ids) {
+        var requestedIds = new LinkedHashSet<>(ids);
+        var found = readRouting.read(null, () -> feedCache.getFeeds(requestedIds));
+
+        var feeds = new ArrayList<FeedDto>(found.size());
+        var missing = new ArrayList<UUID>();
+        for (var id : requestedIds) {
+            var feed = found.get(id);
+            if (feed != null) {
+                feeds.add(feed);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        watchCountBuffer.recordAll(feeds.stream().map(FeedDto::getId).toList());
+        return new FeedBatchResponse(feeds, missing);
+    }
+
+    public Paging<FeedListItem> getAllFeeds(Integer limit, Integer offset, String cursor, UUID userId, FeedView view) {
+        return readRouting.read(userId, () -> {
+            var page = cursor != null ?
+                    toDtoPage(feedRepository.findAllAfter(PageCursor.decode(cursor), limit, view),
+                            totalCountProvider.allFeeds(), view) :
+                    feedCache.getPage(view, limit, offset, () ->
+                            toDtoPage(feedRepository.findAll(limit, offset, view), totalCountProvider.allFeeds(), view));
+            return withUserFlags(page, userId);
+        });
+    }
+
+    /**
+     * Засчитывает просмотры публикаций страницы. Вызывается отдельно от {@link #getAllFeeds},
+     * чтобы ответ {@code 304 Not Modified} не считался просмотром.
+     */
+    public void recordViews(Paging<? extends FeedListItem> page) {
+        watchCountBuffer.recordAll(page.getCurrentValues().stream().map(FeedListItem::getId).toList());
+    }
+
+    private Paging<FeedListItem> withUserFlags(Paging<FeedListItem> page, UUID userId) {
+        if (userId == null) {
+            return page;
+        }
+        return new Paging<>(page.getTotalCount(), page.getLimit(), page.getOffset(),
+                withUserFlags(page.getCurrentValues(), userId), page.getNextCursor(),
+                page.getTotalCountMode(), page.getHasMore());
+    }
+
+    /**
+     * Проставляет {@code likedByMe}/{@code starredByMe} одним запросом на всю страницу.
+     * DTO из кэша общие для всех пользователей, поэтому флаги ставятся на копиях.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends FeedListItem> List<T> withUserFlags(List<T> feeds, UUID userId) {
+        if (userId == null || feeds.isEmpty()) {
+            return feeds;
+        }
 
-        return mapToDto(feed);
+        var flags = feedRepository.findUserFlags(userId, feeds.stream().map(FeedListItem::getId).toList());
+        return feeds.stream()
+                .map(feed -> (T) feed.withUserFlags(
+                        flags.liked().contains(feed.getId()),
+                        flags.starred().contains(feed.getId())))
+                .toList();
     }
 
-    public Paging<FeedDto> getAllFeeds(Integer limit, Integer offset) {
-        var result = feedRepository.findAll(limit, offset);
+    private Paging<FeedListItem> toDtoPage(Paging<Feed> result, TotalCountProvider.TotalCount total, FeedView view) {
         var dtoList = result.getCurrentValues().stream()
-                .map(this::mapToDto)
-                .peek(dto -> feedRepository.incrementWatchCount(dto.getId()))
+                .map(feed -> view == FeedView.SUMMARY ? mapToSummaryDto(feed) : (FeedListItem) mapToDto(feed))
                 .toList();
-        return new Paging<>(result.getTotalCount(), result.getLimit(), result.getOffset(), dtoList);
+        return new Paging<>(total.value(), result.getLimit(), result.getOffset(), dtoList,
+                result.getNextCursor(), total.mode(), result.getHasMore());
     }
 
+    @Transactional
     public FeedDto updateFeed(UUID id, UpdateFeedRequest request) {
         var feed = feedRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Feed not found with id: " + id));
@@ -58,89 +160,254 @@ public class FeedService {
         feed.setText(request.getText());
 
         var updatedFeed = feedRepository.save(feed);
+        outboxRepository.append(ChangeEvent.of(ChangeType.FEED_UPDATED, id, null, null));
+        feedCache.invalidate(id, updatedFeed.getVersion());
         return mapToDto(updatedFeed);
     }
 
+    /**
+     * Удаляет публикацию сразу, а её комментарии, лайки и избранное оставляет
+     * {@link FeedDeletionReaper}: для популярной публикации их сотни тысяч.
+     */
     @Transactional
-    public void deleteFeed(UUID id) {
-        if (!feedRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Feed not found with id: " + id);
-        }
+    public FeedDeletion deleteFeed(UUID id) {
+        var deletion = feedDeletionRepository.tombstone(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Feed not found with id: " + id));
+        outboxRepository.append(ChangeEvent.of(ChangeType.FEED_DELETED, id, null, null));
+        feedCache.invalidateDeleted(id);
+        eventPublisher.publishEvent(new FeedDeletedEvent(id));
+        return deletion;
+    }
 
-        commentRepository.deleteByFeedId(id);
-        userStarRepository.delete(id);
-        feedRepository.deleteLikes(id);
-        feedRepository.deleteById(id);
+    public FeedDeletion getDeletion(UUID id) {
+        return feedDeletionRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Feed deletion not found with id: " + id));
     }
 
     @Transactional
     public void likeFeed(UUID feedId, UUID userId) {
-        if (!feedRepository.existsById(feedId)) {
-            throw new ResourceNotFoundException("Feed not found with id: " + feedId);
+        var outcome = requireFeed(feedRepository.like(feedId, userId), feedId);
+        readRouting.recordWrite(userId);
+        if (outcome == WriteOutcome.APPLIED) {
+            outboxRepository.append(ChangeEvent.of(ChangeType.FEED_LIKED, feedId, userId, null));
+            feedCache.evictFeed(feedId);
+            publishCounters(feedId, new FeedCounterDelta(1, 0, 0));
         }
-        feedRepository.incrementLikesCount(feedId, userId);
     }
 
+    /**
+     * Снимает лайк и избранное; событие и приращение счётчиков пишутся для того, что действительно было снято.
+     */
     @Transactional
     public void unlikeFeed(UUID feedId, UUID userId) {
-        if (!feedRepository.existsById(feedId)) {
-            throw new ResourceNotFoundException("Feed not found with id: " + feedId);
+        var outcome = feedRepository.unlike(feedId, userId);
+        requireFeed(outcome.like(), feedId);
+        readRouting.recordWrite(userId);
+        if (outcome.unliked()) {
+            outboxRepository.append(ChangeEvent.of(ChangeType.FEED_UNLIKED, feedId, userId, null));
+        }
+        if (outcome.unstarred()) {
+            outboxRepository.append(ChangeEvent.of(ChangeType.FEED_UNSTARRED, feedId, userId, null));
+        }
+        if (outcome.unliked() || outcome.unstarred()) {
+            feedCache.evictFeed(feedId);
+            publishCounters(feedId, new FeedCounterDelta(outcome.unliked() ? -1 : 0, outcome.unstarred() ? -1 : 0, 0));
         }
-
-        userStarRepository.unStar(userId, feedId);
-        feedRepository.decrementLikesCount(feedId, userId);
     }
 
     @Transactional
     public Comment addComment(CommentRequest request) {
-        if (!feedRepository.existsById(request.getFeedId())) {
-            throw new ResourceNotFoundException("Feed not found with id: " + request.getFeedId());
-        }
-
         var comment = Comment.builder()
                 .text(request.getText())
                 .userId(request.getUserId())
                 .feedId(request.getFeedId())
                 .build();
 
-        return commentRepository.save(comment);
+        requireFeed(commentRepository.insert(comment), request.getFeedId());
+        readRouting.recordWrite(comment.getUserId());
+        outboxRepository.append(ChangeEvent.of(
+                ChangeType.COMMENT_ADDED, comment.getFeedId(), comment.getUserId(), comment.getId()));
+        feedCache.evictFeed(request.getFeedId());
+        publishCounters(request.getFeedId(), new FeedCounterDelta(0, 0, 1));
+        return comment;
     }
 
-    public void starFeed(UUID feedId, UUID userId) {
-        if (!feedRepository.existsById(feedId)) {
-            throw new ResourceNotFoundException("Feed not found with id: " + feedId);
+    public Paging<Comment> getComments(UUID feedId, Integer limit, String cursor) {
+        var after = cursor != null ? PageCursor.decode(cursor) : null;
+        return readRouting.read(null, () -> commentRepository.findByFeedId(feedId, after, limit));
+    }
+
+    public Paging<Comment> getUserComments(UUID userId, Integer limit, String cursor) {
+        var after = cursor != null ? PageCursor.decode(cursor) : null;
+        return readRouting.read(userId, () -> commentRepository.findByUserId(userId, after, limit));
+    }
+
+    public void exportComments(UUID feedId, OutputStream out) {
+        readRouting.readStream(null, () ->
+                commentRepository.streamByFeedId(feedId, comment -> writeNdjsonLine(out, comment)));
+    }
+
+    public void exportUserComments(UUID userId, OutputStream out) {
+        readRouting.readStream(userId, () ->
+                commentRepository.streamByUserId(userId, comment -> writeNdjsonLine(out, comment)));
+    }
+
+    private void writeNdjsonLine(OutputStream out, Object value) {
+        try {
+            out.write(jsonMapper.writeValueAsBytes(value));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        userStarRepository.star(userId, feedId);
+    @Transactional
+    public void starFeed(UUID feedId, UUID userId) {
+        var outcome = requireFeed(userStarRepository.star(userId, feedId), feedId);
+        readRouting.recordWrite(userId);
+        if (outcome == WriteOutcome.APPLIED) {
+            outboxRepository.append(ChangeEvent.of(ChangeType.FEED_STARRED, feedId, userId, null));
+            feedCache.evictFeed(feedId);
+            publishCounters(feedId, new FeedCounterDelta(0, 1, 0));
+        }
     }
 
+    @Transactional
     public void unStarFeed(UUID feedId, UUID userId) {
-        if (!feedRepository.existsById(feedId)) {
+        var outcome = requireFeed(userStarRepository.unStar(userId, feedId), feedId);
+        readRouting.recordWrite(userId);
+        if (outcome == WriteOutcome.APPLIED) {
+            outboxRepository.append(ChangeEvent.of(ChangeType.FEED_UNSTARRED, feedId, userId, null));
+            feedCache.evictFeed(feedId);
+            publishCounters(feedId, new FeedCounterDelta(0, -1, 0));
+        }
+    }
+
+    private void publishCounters(UUID feedId, FeedCounterDelta delta) {
+        eventPublisher.publishEvent(FeedActivityEvent.counters(feedId, delta));
+    }
+
+    /**
+     * Подписка на изменения счётчиков публикации. Первое событие содержит текущие значения;
+     * подписка, в отличие от {@link #getFeed}, не считается просмотром.
+     */
+    public SseEmitter streamCounters(UUID feedId) {
+        var feed = readRouting.read(null, () -> feedRepository.findById(feedId))
+                .orElseThrow(() -> new ResourceNotFoundException("Feed not found with id: " + feedId));
+        return feedCounterStream.subscribe(feedId, FeedCounterStream.toDto(feed, FeedCounterDelta.ZERO, 0));
+    }
+
+    private WriteOutcome requireFeed(WriteOutcome outcome, UUID feedId) {
+        if (outcome == WriteOutcome.FEED_NOT_FOUND) {
             throw new ResourceNotFoundException("Feed not found with id: " + feedId);
         }
+        if (outcome == WriteOutcome.FEED_ARCHIVED) {
+            throw new FeedArchivedException("Feed engagement is archived, id: " + feedId);
+        }
+        return outcome;
+    }
 
-        userStarRepository.unStar(userId, feedId);
+    /**
+     * Id страницы берутся из индекса избранного пользователя, а сами публикации — из кэша
+     * или одним запросом по этим id, так что стоимость зависит от размера страницы, а не избранного.
+     */
+    public Paging<FeedListItem> getFavourites(UUID userId, Integer limit, Integer offset, String cursor, FeedView view) {
+        var page = readRouting.read(userId, () -> {
+            var starred = cursor != null ?
+                    userStarRepository.findStarredAfter(userId, PageCursor.decode(cursor), limit) :
+                    userStarRepository.findStarred(userId, limit, offset);
+            var total = totalCountProvider.starred(userId);
+            return new Paging<>(total.value(), starred.getLimit(), starred.getOffset(),
+                    hydrate(starred.getCurrentValues(), view), starred.getNextCursor(), total.mode(),
+                    starred.getHasMore());
+        });
+        recordViews(page);
+        return page;
     }
 
-    public Paging<FeedDto> getFavourites(UUID userId, Integer limit, Integer offset) {
-        var result = feedRepository.findAllStarred(userId, limit, offset);
-        var dtoList = result.getCurrentValues().stream()
-                .map(this::mapToDto)
-                .peek(dto -> feedRepository.incrementWatchCount(dto.getId()))
-                .toList();
-        return new Paging<>(result.getTotalCount(), result.getLimit(), result.getOffset(), dtoList);
+    /**
+     * Публикации в порядке {@code ids}; уже удалённые пропускаются.
+     */
+    private List<FeedListItem> hydrate(List<UUID> ids, FeedView view) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<UUID, ? extends FeedListItem> found = view == FeedView.SUMMARY ?
+                feedRepository.findAllByIds(ids, FeedView.SUMMARY).stream()
+                        .collect(Collectors.toMap(Feed::getId, FeedService::mapToSummaryDto)) :
+                feedCache.getFeeds(ids);
+
+        var feeds = new ArrayList<FeedListItem>(ids.size());
+        for (var id : ids) {
+            var feed = found.get(id);
+            if (feed != null) {
+                feeds.add(feed);
+            }
+        }
+        return feeds;
+    }
+
+    public Paging<FeedSearchHit> search(String query, Integer limit, String cursor) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query must not be blank");
+        }
+        var after = cursor != null ? SearchCursor.decode(cursor) : null;
+        return readRouting.read(null, () -> feedSearchRepository.search(query, after, limit));
+    }
+
+    /**
+     * Журнал изменений после позиции {@code since} (с начала хранимого журнала, если не задана).
+     * В отличие от остальных списков, {@code nextCursor} заполнен всегда: с него потребитель
+     * продолжает опрос, а {@code hasMore} говорит, стоит ли делать это сразу.
+     */
+    public Paging<ChangeEvent> getChanges(String since, Integer limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+
+        var position = since != null ? ChangeCursor.decode(since) : ChangeCursor.START;
+        var rows = outboxRepository.findAfter(position, limit + 1);
+        var hasMore = rows.size() > limit;
+        var changes = hasMore ? rows.subList(0, limit) : rows;
+        var nextCursor = changes.isEmpty() ? position : changes.getLast().getCursor();
+        return new Paging<>(null, limit, null, changes, nextCursor.encode(), TotalCountMode.NONE, hasMore);
+    }
+
+    public List<TrendingFeedDto> getTrending(Integer limit) {
+        return trendingService.getTrending(limit);
+    }
+
+    /**
+     * В {@code feed.text} здесь уже обрезанное в базе начало текста.
+     */
+    static FeedSummaryDto mapToSummaryDto(Feed feed) {
+        return FeedSummaryDto.builder()
+                .id(feed.getId())
+                .title(feed.getTitle())
+                .snippet(feed.getText())
+                .likesCount(feed.getLikesCount())
+                .starsCount(feed.getStarsCount())
+                .watchCount(feed.getWatchCount())
+                .commentsCount(feed.getCommentsCount())
+                .created(feed.getCreated())
+                .updated(feed.getUpdated())
+                .modified(feed.getModified())
+                .build();
     }
 
-    private FeedDto mapToDto(Feed feed) {
+    static FeedDto mapToDto(Feed feed) {
         return FeedDto.builder()
                 .id(feed.getId())
                 .title(feed.getTitle())
                 .text(feed.getText())
                 .likesCount(feed.getLikesCount())
+                .starsCount(feed.getStarsCount())
                 .watchCount(feed.getWatchCount())
                 .commentsCount(feed.getCommentsCount())
                 .created(feed.getCreated())
                 .updated(feed.getUpdated())
+                .modified(feed.getModified())
                 .build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package ru.urfu.store.feed.service;
+
+import ru.urfu.store.feed.model.ChangeEvent;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Дописывает события в файл в формате NDJSON, по строке на событие. Пачка сбрасывается на диск
+ * до фиксации позиции ретранслятора, так что после сбоя события могут повториться, но не потеряться.
+ */
+public class FileOutboxSink implements OutboxSink {
+
+    private final Path path;
+    private final JsonMapper jsonMapper;
+
+    public FileOutboxSink(Path path, JsonMapper jsonMapper) {
+        this.path = path;
+        this.jsonMapper = jsonMapper;
+    }
+
+    @Override
+    public synchronized void publish(List<ChangeEvent> events) {
+        var lines = new StringBuilder();
+        for (var event : events) {
+            lines.append(jsonMapper.writeValueAsString(event)).append('\n');
+        }
+
+        try (var channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            var buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
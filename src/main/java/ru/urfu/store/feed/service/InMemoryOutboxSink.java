@@ -0,0 +1,38 @@
+package ru.urfu.store.feed.service;
+
+import ru.urfu.store.feed.model.ChangeEvent;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Хранит последние {@code capacity} событий в памяти. Для тестов и локального запуска.
+ */
+public class InMemoryOutboxSink implements OutboxSink {
+
+    private final int capacity;
+    private final ArrayDeque<ChangeEvent> events;
+
+    public InMemoryOutboxSink(int capacity) {
+        this.capacity = capacity;
+        this.events = new ArrayDeque<>(capacity);
+    }
+
+    @Override
+    public synchronized void publish(List<ChangeEvent> batch) {
+        for (var event : batch) {
+            if (events.size() == capacity) {
+                events.pollFirst();
+            }
+            events.addLast(event);
+        }
+    }
+
+    public synchronized List<ChangeEvent> events() {
+        return List.copyOf(events);
+    }
+
+    public synchronized void clear() {
+        events.clear();
+    }
+}
@@ -0,0 +1,67 @@
+package ru.urfu.store.feed.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.urfu.store.feed.repository.OutboxRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Пересылает журнал изменений в {@link OutboxSink} пачками по {@code feed.outbox.batch-size}.
+ * <p>
+ * Позиция хранится в {@code feed_outbox_relay} и блокируется на время пачки, поэтому из нескольких
+ * экземпляров сервиса пересылает один. Позиция сдвигается в той же транзакции после успешной отправки:
+ * при сбое пачка уйдёт повторно.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OutboxRelay {
+
+    private static final String RELAY_NAME = "sink";
+    private static final int PURGE_BATCH_SIZE = 10_000;
+
+    private final OutboxRepository outboxRepository;
+    private final OutboxSink outboxSink;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${feed.outbox.batch-size}")
+    private int batchSize;
+
+    @Value("${feed.outbox.retention}")
+    private Duration retention;
+
+    @Scheduled(fixedDelayString = "${feed.outbox.relay-interval}")
+    public void relay() {
+        transactionTemplate.executeWithoutResult(status ->
+                outboxRepository.lockRelayPosition(RELAY_NAME).ifPresent(position -> {
+                    var events = outboxRepository.findAfter(position, batchSize);
+                    if (events.isEmpty()) {
+                        return;
+                    }
+                    outboxSink.publish(events);
+                    outboxRepository.saveRelayPosition(RELAY_NAME, events.getLast().getCursor());
+                }));
+    }
+
+    /**
+     * Удаляет события старше {@code feed.outbox.retention}. Потребитель {@code GET /changes},
+     * отставший сильнее, пропустит удалённые события.
+     */
+    @Scheduled(cron = "${feed.outbox.purge-cron}")
+    public void purge() {
+        var before = Instant.now().minus(retention);
+        var deleted = 0;
+        int batch;
+        do {
+            batch = outboxRepository.deleteOlderThan(before, PURGE_BATCH_SIZE);
+            deleted += batch;
+        } while (batch == PURGE_BATCH_SIZE);
+        log.info("Purged {} outbox events older than {}", deleted, before);
+    }
+}
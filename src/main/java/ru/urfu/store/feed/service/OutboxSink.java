@@ -0,0 +1,17 @@
+package ru.urfu.store.feed.service;
+
+import ru.urfu.store.feed.model.ChangeEvent;
+
+import java.util.List;
+
+/**
+ * Получатель событий журнала изменений, в который их пересылает {@link OutboxRelay}.
+ * Реализация выбирается параметром {@code feed.outbox.sink}, см. {@code OutboxConfiguration}.
+ * <p>
+ * Исключение из {@link #publish} откатывает пачку: она будет отправлена повторно,
+ * поэтому получатель должен переносить дубликаты (события различаются по {@link ChangeEvent#getId()}).
+ */
+public interface OutboxSink {
+
+    void publish(List<ChangeEvent> events);
+}
@@ -0,0 +1,147 @@
+package ru.urfu.store.feed.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.urfu.store.feed.repository.PartitionRepository;
+import ru.urfu.store.feed.repository.PartitionRepository.MonthlyPartition;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Обслуживает месячные секции {@code comment} и {@code user_like}: при старте и по {@code feed.partitions.cron}
+ * создаёт секции на {@code feed.partitions.premake-months} вперёд. Без них новые строки попадали бы
+ * в секцию {@code _default}, и создать секцию их месяца было бы уже нельзя.
+ * <p>
+ * При {@code feed.partitions.archive.enabled} секции месяцев старше {@code feed.partitions.archive.retention-months}
+ * отсоединяются, выгружаются в {@code <path>/<секция>.csv.gz} и удаляются. Каждый шаг повторяем: секция,
+ * отсоединённая до сбоя, будет выгружена при следующем запуске. Файлы пишутся на диск экземпляра,
+ * поэтому архивацию включают на одном экземпляре или указывают общий каталог.
+ * <p>
+ * Секционирование остаётся по {@code feed_created}, чтобы {@code (user_id, feed_id)} в {@code user_like}
+ * оставался уникальным, а все строки публикации лежали в одной секции. Поэтому архивируется не время
+ * событий, а публикации целиком: перед отсоединением месяц записывается в {@code engagement_archive},
+ * и с этого момента лайки и комментарии его публикаций отклоняются ({@code 409}). Снятие лайка с такой
+ * публикации уже ничего не меняет, {@code likedByMe} для неё всегда ложно, а счётчики остаются
+ * последними сохранёнными.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PartitionMaintenanceJob {
+
+    private static final Duration DETACH_LOCK_TIMEOUT = Duration.ofSeconds(5);
+
+    private final PartitionRepository partitionRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${feed.partitions.premake-months}")
+    private int premakeMonths;
+
+    @Value("${feed.partitions.archive.enabled}")
+    private boolean archiveEnabled;
+
+    @Value("${feed.partitions.archive.retention-months}")
+    private int retentionMonths;
+
+    @Value("${feed.partitions.archive.path}")
+    private Path archivePath;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createPartitions() {
+        var from = YearMonth.now(ZoneOffset.UTC);
+        var to = from.plusMonths(premakeMonths + 1L);
+        for (var table : PartitionRepository.PARTITIONED_TABLES) {
+            try {
+                var created = partitionRepository.createPartitions(table,
+                        from.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant(),
+                        to.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+                if (created > 0) {
+                    log.info("Created {} monthly partitions of {}", created, table);
+                }
+            } catch (DataAccessException e) {
+                log.error("Failed to create monthly partitions of {}", table, e);
+            }
+        }
+    }
+
+    @Scheduled(cron = "${feed.partitions.cron}")
+    public void maintain() {
+        createPartitions();
+        if (archiveEnabled) {
+            archive();
+        }
+    }
+
+    private void archive() {
+        var cutoff = YearMonth.now(ZoneOffset.UTC).minusMonths(retentionMonths);
+        for (var table : PartitionRepository.PARTITIONED_TABLES) {
+            for (var partition : partitionRepository.findPartitions(table)) {
+                if (!partition.month().isBefore(cutoff)) {
+                    break;
+                }
+                try {
+                    archive(partition);
+                } catch (DataAccessException | UncheckedIOException e) {
+                    log.error("Failed to archive partition {}", partition.name(), e);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void archive(MonthlyPartition partition) {
+        partitionRepository.freeze(partition);
+        if (partition.attached()) {
+            partitionRepository.detach(partition, DETACH_LOCK_TIMEOUT);
+        }
+
+        var file = archivePath.resolve(partition.name() + ".csv.gz");
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!partitionRepository.tryLock(partition)) {
+                return;
+            }
+            var rows = export(partition, file);
+            partitionRepository.markArchived(partition, rows, file);
+            log.info("Archived {} rows of partition {} to {}", rows, partition.name(), file);
+        });
+    }
+
+    /**
+     * Файл появляется под своим именем только целиком и уже сброшенным на диск.
+     */
+    private long export(MonthlyPartition partition, Path file) {
+        var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            long rows;
+            try (var fileOut = new FileOutputStream(tmp.toFile());
+                 var gzip = new GZIPOutputStream(new BufferedOutputStream(fileOut))) {
+                rows = partitionRepository.export(partition, gzip);
+                gzip.finish();
+                gzip.flush();
+                fileOut.getFD().sync();
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package ru.urfu.store.feed.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.util.WebUtils;
+import ru.urfu.store.feed.config.ReplicaLagMonitor;
+import ru.urfu.store.feed.config.ReplicaRoutingDataSource;
+import ru.urfu.store.feed.config.ReplicaRoutingDataSource.Route;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Решает, с какой базы читать: с реплики, если она включена ({@code feed.replica.enabled}) и не отстаёт
+ * (см. {@link ReplicaLagMonitor}), а пользователь не менял данные сам за последние {@code feed.replica.sticky-window}.
+ * Окно должно перекрывать {@code max-lag} вместе с интервалом проверки: тогда свои лайки, избранное
+ * и комментарии пользователь видит сразу.
+ * <p>
+ * Время записи уходит клиенту в cookie {@value #WRITE_COOKIE}, и следующий его запрос читает с основной базы,
+ * на какой бы экземпляр он ни пришёл. Время сверяется с часами другого экземпляра, поэтому окно берётся
+ * с запасом на их расхождение. Для запросов без cookie (клиенты, которые их не хранят, фоновые выгрузки
+ * вне запроса) записи по {@code user_id} ещё запоминаются в памяти экземпляра.
+ */
+@Component
+public class ReadRouting {
+
+    public static final String WRITE_COOKIE = "feed_written_at";
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final Duration stickyWindow;
+    private final Cache<UUID, Boolean> recentWriters;
+    private final Counter primaryReads;
+    private final Counter replicaReads;
+
+    public ReadRouting(
+            ObjectProvider<ReplicaLagMonitor> lagMonitor,
+            @Value("${feed.replica.sticky-window}") Duration stickyWindow,
+            @Value("${feed.replica.sticky-users}") long stickyUsers,
+            MeterRegistry meterRegistry
+    ) {
+        this.lagMonitor = lagMonitor.getIfAvailable();
+        this.stickyWindow = stickyWindow;
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(stickyUsers)
+                .expireAfterWrite(stickyWindow)
+                .build();
+        this.primaryReads = Counter.builder("feed.replica.reads").tag("route", "primary").register(meterRegistry);
+        this.replicaReads = Counter.builder("feed.replica.reads").tag("route", "replica").register(meterRegistry);
+    }
+
+    /**
+     * Выполняет чтение от имени {@code userId} ({@code null} — анонимно) на реплике, если это допустимо.
+     */
+    public <T> T read(UUID userId, Supplier<T> query) {
+        if (lagMonitor == null) {
+            return query.get();
+        }
+        if (!lagMonitor.isHealthy() || wroteRecently(userId)) {
+            primaryReads.increment();
+            return ReplicaRoutingDataSource.route(Route.PRIMARY, query);
+        }
+        replicaReads.increment();
+        return ReplicaRoutingDataSource.route(Route.REPLICA, query);
+    }
+
+    public void readStream(UUID userId, Runnable query) {
+        read(userId, () -> {
+            query.run();
+            return null;
+        });
+    }
+
+    /**
+     * Для запросов внутри чтения, которые реплика выполнить не может: записи и таблицы {@code UNLOGGED}.
+     */
+    public <T> T primary(Supplier<T> query) {
+        return ReplicaRoutingDataSource.route(Route.PRIMARY, query);
+    }
+
+    public void recordWrite(UUID userId) {
+        if (lagMonitor == null) {
+            return;
+        }
+        if (userId != null) {
+            recentWriters.put(userId, Boolean.TRUE);
+        }
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                && attributes.getResponse() != null) {
+            var cookie = ResponseCookie.from(WRITE_COOKIE, Long.toString(System.currentTimeMillis()))
+                    .path("/")
+                    .maxAge(stickyWindow)
+                    .httpOnly(true)
+                    .sameSite("Lax")
+                    .build();
+            attributes.getResponse().addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+        }
+    }
+
+    private boolean wroteRecently(UUID userId) {
+        if (userId != null && recentWriters.getIfPresent(userId) != null) {
+            return true;
+        }
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return false;
+        }
+        var cookie = WebUtils.getCookie(attributes.getRequest(), WRITE_COOKIE);
+        if (cookie == null) {
+            return false;
+        }
+        try {
+            var writtenAt = Long.parseLong(cookie.getValue());
+            return System.currentTimeMillis() - writtenAt < stickyWindow.toMillis();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
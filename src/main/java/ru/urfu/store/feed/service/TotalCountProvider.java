@@ -0,0 +1,82 @@
+package ru.urfu.store.feed.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.urfu.store.feed.model.dto.TotalCountMode;
+import ru.urfu.store.feed.repository.FeedRepository;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Считает {@code totalCount} для страниц ленты в режиме {@code feed.paging.total-count}.
+ * Для избранного оценка планировщика неприменима, поэтому режим {@code ESTIMATE}
+ * там работает как {@code CACHED}.
+ */
+@Component
+public class TotalCountProvider {
+
+    private static final String ALL_FEEDS = "all";
+
+    private final FeedRepository feedRepository;
+    private final TotalCountMode mode;
+    private final Cache<Object, Long> counts;
+
+    public TotalCountProvider(
+            FeedRepository feedRepository,
+            @Value("${feed.paging.total-count}") TotalCountMode mode,
+            @Value("${feed.paging.total-count-ttl}") Duration ttl,
+            @Value("${feed.paging.total-count-cache-size}") long cacheSize
+    ) {
+        this.feedRepository = feedRepository;
+        this.mode = mode;
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public TotalCount allFeeds() {
+        return switch (mode) {
+            case EXACT -> new TotalCount(feedRepository.countAll(), TotalCountMode.EXACT);
+            case CACHED -> cached(ALL_FEEDS, feedRepository::countAll);
+            case ESTIMATE -> estimate();
+            case NONE -> new TotalCount(null, TotalCountMode.NONE);
+        };
+    }
+
+    public TotalCount starred(UUID userId) {
+        return switch (mode) {
+            case EXACT -> new TotalCount(feedRepository.countStarred(userId), TotalCountMode.EXACT);
+            case CACHED, ESTIMATE -> cached(userId, () -> feedRepository.countStarred(userId));
+            case NONE -> new TotalCount(null, TotalCountMode.NONE);
+        };
+    }
+
+    /**
+     * Подсчёт идёт вне Caffeine: функция {@code get} выполнялась бы под блокировкой корзины
+     * {@code ConcurrentHashMap} и держала бы поток-носитель виртуального потока на время запроса.
+     */
+    private TotalCount cached(Object key, Supplier<Long> loader) {
+        var count = counts.getIfPresent(key);
+        if (count == null) {
+            count = loader.get();
+            counts.put(key, count);
+        }
+        return new TotalCount(count, TotalCountMode.CACHED);
+    }
+
+    private TotalCount estimate() {
+        return Optional.of(feedRepository.estimateCountAll())
+                .filter(estimate -> estimate >= 0)
+                .map(estimate -> new TotalCount(estimate, TotalCountMode.ESTIMATE))
+                .orElseGet(() -> cached(ALL_FEEDS, feedRepository::countAll));
+    }
+
+    public record TotalCount(Long value, TotalCountMode mode) {
+    }
+}
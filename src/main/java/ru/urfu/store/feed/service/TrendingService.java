@@ -0,0 +1,277 @@
+package ru.urfu.store.feed.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.urfu.store.feed.model.dto.TrendingFeedDto;
+import ru.urfu.store.feed.repository.TrendingRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Рейтинг «горячих» публикаций по вовлечённости с экспоненциальным затуханием.
+ * <p>
+ * Оценка хранится как сумма {@code weight * exp(λ(t - epoch))} по всем событиям, поэтому новое событие
+ * только увеличивает оценку своей публикации, а порядок остальных не меняется. Это позволяет держать
+ * top-K в {@link TreeSet} и обновлять его за {@code O(log K)} на событие, а отдавать за {@code O(K)}.
+ * Фактическая оценка на момент {@code now} — хранимая, умноженная на {@code exp(-λ(now - epoch))}.
+ * Вместе со снимком в базу {@code epoch} сдвигается на текущий момент, чтобы значения не переполнялись,
+ * а публикации с почти нулевой оценкой выбрасываются из памяти.
+ * <p>
+ * Рейтинг считается в памяти каждого экземпляра по событиям, которые он обработал сам,
+ * и выравнивается при старте: снимок из базы плюс лайки и комментарии после него. Снимки экземпляров
+ * сливаются по максимуму оценки (см. {@link TrendingRepository#saveSnapshot}), а не затирают друг друга.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TrendingService {
+
+    private static final Comparator<Ranked> RANKING = Comparator.comparingDouble(Ranked::score).reversed()
+            .thenComparing(Ranked::feedId);
+
+    private final TrendingRepository trendingRepository;
+    private final FeedCache feedCache;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<UUID, Double> scores = new HashMap<>();
+    private final TreeSet<Ranked> top = new TreeSet<>(RANKING);
+    private Instant epoch = Instant.now();
+    private volatile boolean rebuilt;
+
+    @Value("${feed.trending.half-life}")
+    private Duration halfLife;
+
+    @Value("${feed.trending.top-k}")
+    private int topK;
+
+    @Value("${feed.trending.like-weight}")
+    private double likeWeight;
+
+    @Value("${feed.trending.comment-weight}")
+    private double commentWeight;
+
+    @Value("${feed.trending.view-weight}")
+    private double viewWeight;
+
+    @Value("${feed.trending.rebuild-window}")
+    private Duration rebuildWindow;
+
+    @Value("${feed.trending.min-score}")
+    private double minScore;
+
+    private double decayRate;
+
+    @PostConstruct
+    void init() {
+        decayRate = Math.log(2) / halfLife.toSeconds();
+    }
+
+    /**
+     * Учитывает лайки, комментарии и просмотры после фиксации транзакции, которая их записала: откаченное
+     * событие в рейтинг не попадает. Отрицательные приращения (снятые лайки) не вычитаются — оценка только
+     * растёт, на этом держится top-K; снятые лайки выпадут из рейтинга при следующей перестройке.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivity(FeedActivityEvent event) {
+        var counters = event.counters();
+        var weight = Math.max(counters.likes(), 0) * likeWeight
+                + Math.max(counters.comments(), 0) * commentWeight
+                + event.views() * viewWeight;
+        if (weight > 0) {
+            add(Map.of(event.feedId(), weight));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(FeedDeletedEvent event) {
+        remove(event.feedId());
+    }
+
+    public void remove(UUID feedId) {
+        lock.lock();
+        try {
+            var score = scores.remove(feedId);
+            if (score != null && top.remove(new Ranked(feedId, score))) {
+                refill();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<TrendingFeedDto> getTrending(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+
+        var ranked = new ArrayList<Ranked>(Math.min(limit, topK));
+        lock.lock();
+        try {
+            var decay = Math.exp(-decayRate * secondsSince(epoch, Instant.now()));
+            for (var entry : top) {
+                if (ranked.size() == limit) {
+                    break;
+                }
+                ranked.add(new Ranked(entry.feedId(), entry.score() * decay));
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        var feeds = feedCache.getFeeds(ranked.stream().map(Ranked::feedId).toList());
+
+        var result = new ArrayList<TrendingFeedDto>(ranked.size());
+        for (var entry : ranked) {
+            var feed = feeds.get(entry.feedId());
+            if (feed != null) {
+                result.add(new TrendingFeedDto(feed, entry.score()));
+            } else {
+                remove(entry.feedId());
+            }
+        }
+        return result;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        var now = Instant.now();
+        var takenAt = trendingRepository.findSnapshotTime();
+        var loaded = new HashMap<UUID, Double>();
+        if (takenAt != null && takenAt.isAfter(now.minus(rebuildWindow))) {
+            loaded.putAll(trendingRepository.findSnapshot(decayRate, now));
+        } else {
+            takenAt = now.minus(rebuildWindow);
+        }
+        trendingRepository.computeScores(likeWeight, commentWeight, decayRate, takenAt)
+                .forEach((feedId, score) -> loaded.merge(feedId, score, Double::sum));
+
+        lock.lock();
+        try {
+            rebase(now);
+            loaded.forEach((feedId, score) -> scores.merge(feedId, score, Double::sum));
+            rebuildTop();
+        } finally {
+            lock.unlock();
+        }
+        rebuilt = true;
+        log.info("Trending scores rebuilt for {} feeds", loaded.size());
+    }
+
+    @Scheduled(
+            initialDelayString = "${feed.trending.snapshot-interval}",
+            fixedDelayString = "${feed.trending.snapshot-interval}"
+    )
+    public void snapshot() {
+        if (!rebuilt) {
+            // Иначе пустой рейтинг затрёт снимок, который ещё не был прочитан
+            return;
+        }
+
+        var now = Instant.now();
+        Map<UUID, Double> copy;
+        lock.lock();
+        try {
+            rebase(now);
+            copy = new HashMap<>(scores);
+        } finally {
+            lock.unlock();
+        }
+        trendingRepository.saveSnapshot(copy, now, decayRate, minScore);
+    }
+
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            log.warn("Failed to save trending snapshot on shutdown", e);
+        }
+    }
+
+    private void add(Map<UUID, Double> weights) {
+        if (weights.isEmpty()) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            var growth = Math.exp(decayRate * secondsSince(epoch, Instant.now()));
+            weights.forEach((feedId, weight) -> {
+                var oldScore = scores.get(feedId);
+                var newScore = (oldScore != null ? oldScore : 0) + weight * growth;
+                scores.put(feedId, newScore);
+                promote(feedId, oldScore, newScore);
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Оценка публикации только что выросла с {@code oldScore} до {@code newScore}: обновляет её место в top-K
+     * или вытесняет оттуда минимальную.
+     */
+    private void promote(UUID feedId, Double oldScore, double newScore) {
+        if (oldScore != null && top.remove(new Ranked(feedId, oldScore))) {
+            top.add(new Ranked(feedId, newScore));
+        } else if (top.size() < topK) {
+            top.add(new Ranked(feedId, newScore));
+        } else if (newScore > top.last().score()) {
+            top.pollLast();
+            top.add(new Ranked(feedId, newScore));
+        }
+    }
+
+    /**
+     * После удаления публикации из top-K добирает лучшую из оставшихся. Удаления редки,
+     * поэтому проход по всем оценкам здесь допустим.
+     */
+    private void refill() {
+        scores.entrySet().stream()
+                .map(entry -> new Ranked(entry.getKey(), entry.getValue()))
+                .filter(entry -> !top.contains(entry))
+                .min(RANKING)
+                .ifPresent(top::add);
+    }
+
+    /**
+     * Переносит {@code epoch} на {@code now}: хранимые оценки становятся фактическими на этот момент,
+     * а слишком маленькие удаляются.
+     */
+    private void rebase(Instant now) {
+        var decay = Math.exp(-decayRate * secondsSince(epoch, now));
+        scores.replaceAll((feedId, score) -> score * decay);
+        scores.values().removeIf(score -> score < minScore);
+        epoch = now;
+        rebuildTop();
+    }
+
+    private void rebuildTop() {
+        top.clear();
+        scores.forEach((feedId, score) -> promote(feedId, null, score));
+    }
+
+    private static double secondsSince(Instant from, Instant to) {
+        return Duration.between(from, to).toMillis() / 1000.0;
+    }
+
+    private record Ranked(UUID feedId, double score) {
+    }
+}
@@ -0,0 +1,165 @@
+package ru.urfu.store.feed.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.urfu.store.feed.repository.FeedRepository;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Буфер просмотров публикаций. Просмотры копятся в памяти в {@link LongAdder} на каждую публикацию
+ * и сбрасываются в базу пачкой по расписанию, при превышении {@code feed.watch-count.max-pending}
+ * и при остановке приложения. При падении процесса теряется не больше {@code max-pending}
+ * просмотров плюс накопленные за один интервал сброса.
+ * <p>
+ * Пока база недоступна, буфер не растёт дальше {@code max-pending}: несохранённые просмотры возвращаются
+ * в него, пока помещаются, а остальные и новые сверх предела отбрасываются и считаются
+ * в {@code feed.watch-count.dropped}. Сброс по размеру до следующей удачной записи не запускается,
+ * чтобы недоступная база не получала попытку на каждом запросе.
+ */
+@Slf4j
+@Component
+public class WatchCountBuffer {
+
+    private final FeedRepository feedRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Counter dropped;
+
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final LongAdder pendingTotal = new LongAdder();
+    private volatile ConcurrentHashMap<UUID, LongAdder> pending = new ConcurrentHashMap<>();
+    private volatile boolean flushFailing;
+
+    @Value("${feed.watch-count.max-pending}")
+    private long maxPending;
+
+    public WatchCountBuffer(FeedRepository feedRepository, ApplicationEventPublisher eventPublisher,
+                            MeterRegistry meterRegistry) {
+        this.feedRepository = feedRepository;
+        this.eventPublisher = eventPublisher;
+        this.dropped = Counter.builder("feed.watch-count.dropped")
+                .description("Views dropped because the buffer was full while the database was unavailable")
+                .register(meterRegistry);
+    }
+
+    public void record(UUID feedId) {
+        recordAll(List.of(feedId));
+    }
+
+    public void recordAll(Collection<UUID> feedIds) {
+        if (feedIds.isEmpty()) {
+            return;
+        }
+
+        if (flushFailing && pendingTotal.sum() >= maxPending) {
+            dropped.increment(feedIds.size());
+            return;
+        }
+
+        swapLock.readLock().lock();
+        try {
+            for (var feedId : feedIds) {
+                pending.computeIfAbsent(feedId, id -> new LongAdder()).increment();
+            }
+            pendingTotal.add(feedIds.size());
+        } finally {
+            swapLock.readLock().unlock();
+        }
+
+        if (pendingTotal.sum() >= maxPending && !flushFailing) {
+            flush();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${feed.watch-count.flush-interval}")
+    public void flush() {
+        if (!flushLock.tryLock()) {
+            return;
+        }
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushLock.lock();
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void doFlush() {
+        Map<UUID, LongAdder> snapshot;
+        swapLock.writeLock().lock();
+        try {
+            snapshot = pending;
+            pending = new ConcurrentHashMap<>();
+            pendingTotal.reset();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        if (snapshot.isEmpty()) {
+            return;
+        }
+
+        var deltas = new HashMap<UUID, Long>(snapshot.size());
+        snapshot.forEach((feedId, counter) -> deltas.put(feedId, counter.sum()));
+
+        try {
+            feedRepository.incrementWatchCounts(deltas);
+        } catch (RuntimeException e) {
+            log.error("Failed to flush {} watch counters, keeping them for the next attempt", deltas.size(), e);
+            flushFailing = true;
+            requeue(deltas);
+            return;
+        }
+        flushFailing = false;
+        deltas.forEach((feedId, views) -> eventPublisher.publishEvent(FeedActivityEvent.views(feedId, views)));
+    }
+
+    /**
+     * Возвращает несохранённые просмотры в буфер, пока в нём есть место до {@code max-pending}.
+     */
+    private void requeue(Map<UUID, Long> deltas) {
+        var lost = 0L;
+        swapLock.readLock().lock();
+        try {
+            for (var entry : deltas.entrySet()) {
+                var kept = Math.min(entry.getValue(), Math.max(maxPending - pendingTotal.sum(), 0));
+                if (kept > 0) {
+                    pending.computeIfAbsent(entry.getKey(), id -> new LongAdder()).add(kept);
+                    pendingTotal.add(kept);
+                }
+                lost += entry.getValue() - kept;
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        if (lost > 0) {
+            dropped.increment(lost);
+            log.warn("Watch count buffer is full, dropped {} views", lost);
+        }
+    }
+}
@@ -0,0 +1 @@
+CREATE INDEX feed_created_id_idx ON feed (created DESC, id DESC);
@@ -0,0 +1,19 @@
+ALTER TABLE feed
+    ADD COLUMN likes_count    BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN stars_count    BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN comments_count BIGINT NOT NULL DEFAULT 0;
+
+UPDATE feed f
+SET likes_count = l.likes_count
+FROM (SELECT feed_id, COUNT(*) AS likes_count FROM user_like GROUP BY feed_id) l
+WHERE f.id = l.feed_id;
+
+UPDATE feed f
+SET stars_count = s.stars_count
+FROM (SELECT feed_id, COUNT(*) AS stars_count FROM user_star GROUP BY feed_id) s
+WHERE f.id = s.feed_id;
+
+UPDATE feed f
+SET comments_count = c.comments_count
+FROM (SELECT feed_id, COUNT(*) AS comments_count FROM comment GROUP BY feed_id) c
+WHERE f.id = c.feed_id;
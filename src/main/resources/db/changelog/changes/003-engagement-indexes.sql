@@ -0,0 +1,7 @@
+CREATE INDEX comment_feed_id_created_idx ON comment (feed_id, created DESC, id DESC);
+
+CREATE INDEX comment_user_id_created_idx ON comment (user_id, created DESC, id DESC);
+
+CREATE INDEX user_like_feed_id_idx ON user_like (feed_id);
+
+CREATE INDEX user_star_feed_id_idx ON user_star (feed_id);
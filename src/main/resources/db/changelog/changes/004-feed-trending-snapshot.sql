@@ -0,0 +1,6 @@
+CREATE TABLE feed_trending_snapshot
+(
+    feed_id  UUID PRIMARY KEY,
+    score    DOUBLE PRECISION         NOT NULL,
+    taken_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
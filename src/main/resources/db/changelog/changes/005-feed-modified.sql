@@ -0,0 +1,5 @@
+ALTER TABLE feed
+    ADD COLUMN modified TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now();
+
+UPDATE feed
+SET modified = COALESCE(updated, created);
@@ -0,0 +1,7 @@
+ALTER TABLE feed
+    ADD COLUMN search_vector TSVECTOR GENERATED ALWAYS AS (
+        setweight(to_tsvector('russian'::regconfig, title), 'A') ||
+        setweight(to_tsvector('russian'::regconfig, text), 'B')
+    ) STORED;
+
+CREATE INDEX feed_search_vector_idx ON feed USING GIN (search_vector);
@@ -0,0 +1,14 @@
+CREATE TABLE feed_deletion
+(
+    feed_id          UUID PRIMARY KEY,
+    requested        TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    finished         TIMESTAMP WITH TIME ZONE,
+    comments_total   BIGINT                   NOT NULL,
+    likes_total      BIGINT                   NOT NULL,
+    stars_total      BIGINT                   NOT NULL,
+    comments_deleted BIGINT                   NOT NULL DEFAULT 0,
+    likes_deleted    BIGINT                   NOT NULL DEFAULT 0,
+    stars_deleted    BIGINT                   NOT NULL DEFAULT 0
+);
+
+CREATE INDEX feed_deletion_pending_idx ON feed_deletion (requested) WHERE finished IS NULL;
@@ -0,0 +1,21 @@
+CREATE TABLE feed_outbox
+(
+    txid       XID8                     NOT NULL DEFAULT pg_current_xact_id(),
+    id         BIGINT GENERATED ALWAYS AS IDENTITY,
+    type       TEXT                     NOT NULL,
+    feed_id    UUID                     NOT NULL,
+    user_id    UUID,
+    comment_id UUID,
+    created    TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    PRIMARY KEY (txid, id)
+);
+
+CREATE INDEX feed_outbox_created_idx ON feed_outbox (created);
+
+CREATE TABLE feed_outbox_relay
+(
+    name    TEXT PRIMARY KEY,
+    txid    XID8                     NOT NULL DEFAULT '0',
+    id      BIGINT                   NOT NULL DEFAULT 0,
+    updated TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
@@ -0,0 +1,11 @@
+ALTER TABLE user_star
+    ADD COLUMN feed_created TIMESTAMP WITH TIME ZONE;
+
+-- Избранное ещё не дочищенных удалённых публикаций получает время самой отметки
+UPDATE user_star s
+SET feed_created = COALESCE((SELECT f.created FROM feed f WHERE f.id = s.feed_id), s.created);
+
+ALTER TABLE user_star
+    ALTER COLUMN feed_created SET NOT NULL;
+
+CREATE INDEX user_star_user_id_feed_created_idx ON user_star (user_id, feed_created DESC, feed_id DESC);
@@ -0,0 +1,12 @@
+ALTER TABLE feed
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+-- Общий для экземпляров сервиса уровень кэша публикаций. Содержимое восстанавливается из feed,
+-- поэтому таблица не пишется в WAL и очищается после сбоя базы.
+CREATE UNLOGGED TABLE feed_cache
+(
+    feed_id UUID PRIMARY KEY,
+    version BIGINT                   NOT NULL,
+    payload TEXT                     NOT NULL,
+    cached  TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
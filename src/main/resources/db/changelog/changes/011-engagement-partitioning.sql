@@ -0,0 +1,127 @@
+--liquibase formatted sql
+
+--changeset feed:011-engagement-partitioning splitStatements:false
+-- comment и user_like секционируются по месяцам feed_created — времени создания публикации, как в user_star.
+-- Все строки одной публикации лежат в одной секции: выборки, удаления и пересчёты по публикации
+-- затрагивают только её, а (user_id, feed_id) остаётся уникальным, потому что feed_created определяется feed_id.
+-- Секции называются <таблица>_ГГГГ_ММ, границы месяцев — по UTC. Строки месяцев без секции
+-- (уже заархивированных) попадают в <таблица>_default.
+
+CREATE FUNCTION create_monthly_partitions(parent TEXT, from_time TIMESTAMPTZ, to_time TIMESTAMPTZ)
+    RETURNS INT
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    month_start    TIMESTAMP := date_trunc('month', from_time AT TIME ZONE 'UTC');
+    partition_name TEXT;
+    created_count  INT       := 0;
+BEGIN
+    WHILE month_start < to_time AT TIME ZONE 'UTC'
+        LOOP
+            partition_name := parent || '_' || to_char(month_start, 'YYYY_MM');
+            IF to_regclass(partition_name) IS NULL THEN
+                EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                               partition_name, parent,
+                               month_start AT TIME ZONE 'UTC',
+                               (month_start + INTERVAL '1 month') AT TIME ZONE 'UTC');
+                created_count := created_count + 1;
+            END IF;
+            month_start := month_start + INTERVAL '1 month';
+        END LOOP;
+    RETURN created_count;
+END
+$$;
+
+-- comment
+
+ALTER TABLE comment
+    RENAME TO comment_unpartitioned;
+
+CREATE TABLE comment
+(
+    id           UUID                     NOT NULL DEFAULT gen_random_uuid(),
+    text         TEXT                     NOT NULL,
+    feed_id      UUID                     NOT NULL,
+    user_id      UUID                     NOT NULL,
+    created      TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    updated      TIMESTAMP WITH TIME ZONE,
+    feed_created TIMESTAMP WITH TIME ZONE NOT NULL
+) PARTITION BY RANGE (feed_created);
+
+CREATE TABLE comment_default PARTITION OF comment DEFAULT;
+
+SELECT create_monthly_partitions('comment',
+                                 LEAST(now(),
+                                       (SELECT MIN(created) FROM feed),
+                                       (SELECT MIN(created) FROM comment_unpartitioned)),
+                                 now() + INTERVAL '3 months');
+
+-- Комментарии ещё не дочищенных удалённых публикаций получают время самого комментария
+INSERT INTO comment (id, text, feed_id, user_id, created, updated, feed_created)
+SELECT c.id, c.text, c.feed_id, c.user_id, c.created, c.updated, COALESCE(f.created, c.created)
+FROM comment_unpartitioned c
+         LEFT JOIN feed f ON f.id = c.feed_id;
+
+DROP TABLE comment_unpartitioned;
+
+ALTER TABLE comment
+    ADD PRIMARY KEY (id, feed_created);
+
+CREATE INDEX comment_feed_id_created_idx ON comment (feed_id, created DESC, id DESC);
+
+CREATE INDEX comment_user_id_created_idx ON comment (user_id, created DESC, id DESC);
+
+-- Для пересчёта трендов по событиям последних дней
+CREATE INDEX comment_created_idx ON comment (created);
+
+-- user_like
+
+ALTER TABLE user_like
+    RENAME TO user_like_unpartitioned;
+
+CREATE TABLE user_like
+(
+    user_id      UUID                     NOT NULL,
+    feed_id      UUID                     NOT NULL,
+    created      TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    feed_created TIMESTAMP WITH TIME ZONE NOT NULL
+) PARTITION BY RANGE (feed_created);
+
+CREATE TABLE user_like_default PARTITION OF user_like DEFAULT;
+
+SELECT create_monthly_partitions('user_like',
+                                 LEAST(now(),
+                                       (SELECT MIN(created) FROM feed),
+                                       (SELECT MIN(created) FROM user_like_unpartitioned)),
+                                 now() + INTERVAL '3 months');
+
+INSERT INTO user_like (user_id, feed_id, created, feed_created)
+SELECT l.user_id, l.feed_id, l.created, COALESCE(f.created, l.created)
+FROM user_like_unpartitioned l
+         LEFT JOIN feed f ON f.id = l.feed_id;
+
+DROP TABLE user_like_unpartitioned;
+
+ALTER TABLE user_like
+    ADD PRIMARY KEY (user_id, feed_id, feed_created);
+
+CREATE INDEX user_like_feed_id_idx ON user_like (feed_id);
+
+CREATE INDEX user_like_created_idx ON user_like (created);
+
+-- Удаления, поставленные в очередь после миграции, помнят секцию публикации
+ALTER TABLE feed_deletion
+    ADD COLUMN feed_created TIMESTAMP WITH TIME ZONE;
+
+-- Выгруженные в файлы и удалённые секции
+CREATE TABLE engagement_archive
+(
+    partition_name TEXT PRIMARY KEY,
+    parent         TEXT                     NOT NULL,
+    range_from     TIMESTAMP WITH TIME ZONE NOT NULL,
+    range_to       TIMESTAMP WITH TIME ZONE NOT NULL,
+    row_count      BIGINT                   NOT NULL,
+    file           TEXT                     NOT NULL,
+    archived       TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now()
+);
@@ -0,0 +1,23 @@
+--liquibase formatted sql
+
+--changeset feed:012-engagement-archive-freeze splitStatements:false
+-- Месяц записывается в engagement_archive до отсоединения секции, ещё без файла и числа строк:
+-- с этого момента лайки и комментарии публикаций этого месяца не принимаются. Иначе они попали бы
+-- в <таблица>_default уже после выгрузки, и (user_id, feed_id) в user_like перестал бы быть уникальным.
+ALTER TABLE engagement_archive
+    ALTER COLUMN row_count DROP NOT NULL,
+    ALTER COLUMN file DROP NOT NULL;
+
+-- Строки parent_table публикации, созданной в feed_created, выгружены или выгружаются в архив
+CREATE FUNCTION engagement_archived(parent_table TEXT, feed_created TIMESTAMPTZ)
+    RETURNS BOOLEAN
+    LANGUAGE sql
+    STABLE
+AS
+$$
+SELECT EXISTS (SELECT 1
+               FROM engagement_archive
+               WHERE parent = parent_table
+                 AND range_from <= feed_created
+                 AND range_to > feed_created)
+$$;
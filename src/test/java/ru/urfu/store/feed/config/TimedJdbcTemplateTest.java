@@ -0,0 +1,90 @@
+package ru.urfu.store.feed.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TimedJdbcTemplateTest {
+
+    private static final String UPDATE = "UPDATE feed SET watch_count = watch_count + 1 WHERE id IN (:ids)";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DataSource dataSource = mock(DataSource.class);
+    private final Connection connection = mock(Connection.class);
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+    private final TimedJdbcTemplate jdbcTemplate =
+            new TimedJdbcTemplate(dataSource, meterRegistry, Duration.ZERO, 1.0);
+    private final TimedNamedParameterJdbcTemplate namedJdbcTemplate = new TimedNamedParameterJdbcTemplate(jdbcTemplate);
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+    }
+
+    @Test
+    void statementIsTimedWithAffectedRows() throws SQLException {
+        when(statement.executeUpdate()).thenReturn(2);
+
+        namedJdbcTemplate.update(UPDATE, new MapSqlParameterSource("ids", List.of(1, 2)));
+
+        assertThat(meterRegistry.get("feed.sql").tag("statement", "other").tag("outcome", "success").timer().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get("feed.sql.rows").tag("statement", "other").summary().totalAmount())
+                .isEqualTo(2);
+        verify(connection).prepareStatement("UPDATE feed SET watch_count = watch_count + 1 WHERE id IN (?, ?)");
+    }
+
+    @Test
+    void failedStatementIsTimedAsError() throws SQLException {
+        when(statement.executeUpdate()).thenThrow(new SQLException("boom"));
+
+        assertThatThrownBy(() -> namedJdbcTemplate.update(UPDATE, new MapSqlParameterSource("ids", List.of(1))))
+                .isInstanceOf(DataAccessException.class);
+
+        assertThat(meterRegistry.get("feed.sql").tag("statement", "other").tag("outcome", "error").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void statementNameIsCachedOncePerUnexpandedSql() throws SQLException {
+        when(statement.executeUpdate()).thenReturn(1);
+
+        namedJdbcTemplate.update(UPDATE, new MapSqlParameterSource("ids", List.of(1)));
+        namedJdbcTemplate.update(UPDATE, new MapSqlParameterSource("ids", List.of(1, 2, 3)));
+        namedJdbcTemplate.update(UPDATE, new MapSqlParameterSource("ids", List.of(1, 2)));
+
+        var statementNames = (Cache<?, ?>) ReflectionTestUtils.getField(jdbcTemplate, "statementNames");
+        assertThat(statementNames.asMap()).containsOnlyKeys(UPDATE);
+        assertThat(meterRegistry.get("feed.sql").tag("outcome", "success").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    void describedParametersAreTruncatedOneByOne() {
+        var params = new MapSqlParameterSource()
+                .addValue("text", "x".repeat(150))
+                .addValue("ids", new String[]{"a", "b"})
+                .addValue("userId", null);
+
+        assertThat(TimedJdbcTemplate.describe(params))
+                .isEqualTo("{text=" + "x".repeat(100) + "..., ids=[a, b], userId=null}");
+    }
+}
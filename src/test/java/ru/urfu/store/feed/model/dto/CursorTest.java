@@ -0,0 +1,73 @@
+package ru.urfu.store.feed.model.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Курсоры пагинации: кодирование туда и обратно и отказ на испорченной строке
+ * ({@link IllegalArgumentException} отдаётся клиенту как {@code 400}).
+ */
+class CursorTest {
+
+    @Test
+    void pageCursorRoundTrip() {
+        var cursor = new PageCursor(Instant.parse("2025-03-01T10:15:30.123456Z"), UUID.randomUUID());
+
+        assertThat(PageCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void searchCursorRoundTrip() {
+        var cursor = new SearchCursor(0.123456789f, UUID.randomUUID());
+
+        assertThat(SearchCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void changeCursorRoundTrip() {
+        var cursor = new ChangeCursor(Long.MAX_VALUE, 42);
+
+        assertThat(ChangeCursor.decode(cursor.encode())).isEqualTo(cursor);
+        assertThat(ChangeCursor.decode(ChangeCursor.START.encode())).isEqualTo(ChangeCursor.START);
+    }
+
+    @Test
+    void pageCursorRejectsBadInput() {
+        assertThatThrownBy(() -> PageCursor.decode("not base64!")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PageCursor.decode(encode("no separator")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PageCursor.decode(encode("yesterday|" + UUID.randomUUID())))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PageCursor.decode(encode(Instant.now() + "|not-a-uuid")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void searchCursorRejectsBadInput() {
+        assertThatThrownBy(() -> SearchCursor.decode("not base64!")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SearchCursor.decode(encode("0.5")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SearchCursor.decode(encode("high|" + UUID.randomUUID())))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void changeCursorRejectsBadInput() {
+        assertThatThrownBy(() -> ChangeCursor.decode("not base64!")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ChangeCursor.decode(encode("17")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ChangeCursor.decode(encode("17|last")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
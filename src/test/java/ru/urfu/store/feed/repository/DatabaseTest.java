@@ -0,0 +1,67 @@
+package ru.urfu.store.feed.repository;
+
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Тесты репозиториев на настоящей базе, той же, что и у {@link QueryPlanTest}: запускаются только
+ * при заданной {@code FEED_QUERY_PLAN_DB_URL}. Миграции накатываются один раз на класс, а всё,
+ * что записал тест, откатывается после него.
+ */
+@EnabledIfEnvironmentVariable(named = "FEED_QUERY_PLAN_DB_URL", matches = ".+")
+abstract class DatabaseTest {
+
+    static SingleConnectionDataSource dataSource;
+    static NamedParameterJdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void migrate() throws Exception {
+        dataSource = new SingleConnectionDataSource(
+                System.getenv("FEED_QUERY_PLAN_DB_URL"),
+                System.getenv("FEED_QUERY_PLAN_DB_USER"),
+                System.getenv("FEED_QUERY_PLAN_DB_PASS"),
+                true
+        );
+        var liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setChangeLog("classpath:db/changelog/db.changelog-master.yaml");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+
+        dataSource.getConnection().setAutoCommit(false);
+        jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void rollback() throws SQLException {
+        dataSource.getConnection().rollback();
+    }
+
+    @AfterAll
+    static void close() {
+        dataSource.destroy();
+    }
+
+    static UUID insertFeed(Instant created) {
+        var sql = "INSERT INTO feed (title, text, created) VALUES ('title', 'text', :created) RETURNING id";
+        var params = new MapSqlParameterSource().addValue("created", Timestamp.from(created));
+        return jdbcTemplate.queryForObject(sql, params, UUID.class);
+    }
+
+    static long count(String sql, UUID feedId) {
+        var count = jdbcTemplate.queryForObject(sql, new MapSqlParameterSource("feedId", feedId), Long.class);
+        return count != null ? count : 0;
+    }
+}
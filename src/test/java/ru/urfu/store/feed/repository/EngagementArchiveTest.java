@@ -0,0 +1,65 @@
+package ru.urfu.store.feed.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.urfu.store.feed.model.Comment;
+import ru.urfu.store.feed.model.UserLike;
+import ru.urfu.store.feed.model.WriteOutcome;
+import ru.urfu.store.feed.repository.PartitionRepository.MonthlyPartition;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EngagementArchiveTest extends DatabaseTest {
+
+    private static final YearMonth ARCHIVED_MONTH = YearMonth.of(2020, 1);
+
+    private FeedRepository feedRepository;
+    private CommentRepository commentRepository;
+    private PartitionRepository partitionRepository;
+    private UUID archivedFeedId;
+    private UUID feedId;
+
+    @BeforeEach
+    void setUp() {
+        feedRepository = new FeedRepository(jdbcTemplate);
+        commentRepository = new CommentRepository(jdbcTemplate);
+        partitionRepository = new PartitionRepository(jdbcTemplate);
+
+        archivedFeedId = insertFeed(Instant.parse("2020-01-15T12:00:00Z"));
+        feedId = insertFeed(Instant.now());
+        partitionRepository.freeze(new MonthlyPartition("user_like_2020_01", PartitionRepository.LIKES, ARCHIVED_MONTH, true));
+        partitionRepository.freeze(new MonthlyPartition("comment_2020_01", PartitionRepository.COMMENTS, ARCHIVED_MONTH, true));
+    }
+
+    @Test
+    void likeOfArchivedMonthIsRefusedWithoutTouchingCounters() {
+        assertThat(feedRepository.like(archivedFeedId, UUID.randomUUID())).isEqualTo(WriteOutcome.FEED_ARCHIVED);
+        assertThat(feedRepository.like(feedId, UUID.randomUUID())).isEqualTo(WriteOutcome.APPLIED);
+
+        assertThat(count("SELECT likes_count FROM feed WHERE id = :feedId", archivedFeedId)).isZero();
+        assertThat(count("SELECT COUNT(*) FROM user_like WHERE feed_id = :feedId", archivedFeedId)).isZero();
+        assertThat(feedRepository.insertLikes(List.of(new UserLike(UUID.randomUUID(), archivedFeedId))))
+                .containsExactly(0);
+    }
+
+    @Test
+    void commentOfArchivedMonthIsRefused() {
+        var comment = Comment.builder().text("text").userId(UUID.randomUUID()).feedId(archivedFeedId).build();
+
+        assertThat(commentRepository.insert(comment)).isEqualTo(WriteOutcome.FEED_ARCHIVED);
+        assertThat(comment.getId()).isNull();
+        assertThat(count("SELECT comments_count FROM feed WHERE id = :feedId", archivedFeedId)).isZero();
+    }
+
+    @Test
+    void archivedFeedsAreFoundPerTable() {
+        assertThat(partitionRepository.findArchivedFeeds(PartitionRepository.LIKES, List.of(archivedFeedId, feedId)))
+                .containsExactly(archivedFeedId);
+        assertThat(partitionRepository.findArchivedFeeds(PartitionRepository.COMMENTS, List.of(feedId))).isEmpty();
+    }
+}
@@ -0,0 +1,61 @@
+package ru.urfu.store.feed.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.urfu.store.feed.model.Comment;
+import ru.urfu.store.feed.model.WriteOutcome;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EngagementWriteTest extends DatabaseTest {
+
+    private FeedRepository feedRepository;
+    private CommentRepository commentRepository;
+    private UserStarRepository userStarRepository;
+    private final UUID userId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        feedRepository = new FeedRepository(jdbcTemplate);
+        commentRepository = new CommentRepository(jdbcTemplate);
+        userStarRepository = new UserStarRepository(jdbcTemplate);
+    }
+
+    @Test
+    void writesToMissingFeedReportNotFoundAndInsertNothing() {
+        var missingId = UUID.randomUUID();
+        var comment = Comment.builder().text("text").userId(userId).feedId(missingId).build();
+
+        assertThat(feedRepository.like(missingId, userId)).isEqualTo(WriteOutcome.FEED_NOT_FOUND);
+        assertThat(feedRepository.unlike(missingId, userId).feedExists()).isFalse();
+        assertThat(userStarRepository.star(userId, missingId)).isEqualTo(WriteOutcome.FEED_NOT_FOUND);
+        assertThat(userStarRepository.unStar(userId, missingId)).isEqualTo(WriteOutcome.FEED_NOT_FOUND);
+        assertThat(commentRepository.insert(comment)).isEqualTo(WriteOutcome.FEED_NOT_FOUND);
+
+        assertThat(count("SELECT COUNT(*) FROM user_like WHERE feed_id = :feedId", missingId)).isZero();
+        assertThat(count("SELECT COUNT(*) FROM user_star WHERE feed_id = :feedId", missingId)).isZero();
+        assertThat(count("SELECT COUNT(*) FROM comment WHERE feed_id = :feedId", missingId)).isZero();
+    }
+
+    @Test
+    void repeatedWritesAreCountedOnce() {
+        var feedId = insertFeed(Instant.now());
+
+        assertThat(feedRepository.like(feedId, userId)).isEqualTo(WriteOutcome.APPLIED);
+        assertThat(feedRepository.like(feedId, userId)).isEqualTo(WriteOutcome.UNCHANGED);
+        assertThat(userStarRepository.star(userId, feedId)).isEqualTo(WriteOutcome.APPLIED);
+        assertThat(userStarRepository.star(userId, feedId)).isEqualTo(WriteOutcome.UNCHANGED);
+
+        assertThat(count("SELECT likes_count FROM feed WHERE id = :feedId", feedId)).isEqualTo(1);
+        assertThat(count("SELECT stars_count FROM feed WHERE id = :feedId", feedId)).isEqualTo(1);
+
+        var unliked = feedRepository.unlike(feedId, userId);
+        assertThat(unliked.unliked()).isTrue();
+        assertThat(unliked.unstarred()).isTrue();
+        assertThat(userStarRepository.unStar(userId, feedId)).isEqualTo(WriteOutcome.UNCHANGED);
+        assertThat(count("SELECT likes_count FROM feed WHERE id = :feedId", feedId)).isZero();
+    }
+}
@@ -0,0 +1,84 @@
+package ru.urfu.store.feed.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.urfu.store.feed.model.dto.PageCursor;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FavouritesTest extends DatabaseTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-01T12:00:00Z");
+
+    private UserStarRepository userStarRepository;
+    private final UUID userId = UUID.randomUUID();
+    private final Map<UUID, Instant> created = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        userStarRepository = new UserStarRepository(jdbcTemplate);
+        for (var hours : List.of(1, 2, 2, 3, 5)) {
+            var feedCreated = NOW.minus(hours, ChronoUnit.HOURS);
+            var feedId = insertFeed(feedCreated);
+            created.put(feedId, feedCreated);
+            userStarRepository.star(userId, feedId);
+        }
+        userStarRepository.star(UUID.randomUUID(), insertFeed(NOW));
+    }
+
+    @Test
+    void keysetPagesWalkFavouritesInFeedOrderWithoutGapsOrRepeats() {
+        var walked = new ArrayList<UUID>();
+        var page = userStarRepository.findStarred(userId, 2, 0);
+        walked.addAll(page.getCurrentValues());
+        while (page.getNextCursor() != null) {
+            assertThat(page.getHasMore()).isTrue();
+            page = userStarRepository.findStarredAfter(userId, PageCursor.decode(page.getNextCursor()), 2);
+            walked.addAll(page.getCurrentValues());
+        }
+
+        assertThat(walked).containsExactlyElementsOf(expectedOrder());
+        assertThat(page.getHasMore()).isFalse();
+    }
+
+    @Test
+    void offsetPageMatchesKeysetPage() {
+        var first = userStarRepository.findStarred(userId, 2, 0);
+
+        assertThat(userStarRepository.findStarred(userId, 2, 2).getCurrentValues())
+                .isEqualTo(userStarRepository.findStarredAfter(
+                        userId, PageCursor.decode(first.getNextCursor()), 2).getCurrentValues());
+    }
+
+    @Test
+    void unstarredFeedLeavesTheIndex() {
+        var unstarred = expectedOrder().getFirst();
+
+        userStarRepository.unStar(userId, unstarred);
+
+        assertThat(userStarRepository.findStarred(userId, 10, 0).getCurrentValues())
+                .hasSize(4)
+                .doesNotContain(unstarred);
+    }
+
+    /**
+     * Порядок ленты: {@code created} по убыванию, при равенстве — id по убыванию. Postgres сравнивает
+     * {@code uuid} побайтно, как строки в шестнадцатеричной записи, а не как {@link UUID#compareTo}.
+     */
+    private List<UUID> expectedOrder() {
+        return created.keySet().stream()
+                .sorted(Comparator.comparing((UUID id) -> created.get(id))
+                        .thenComparing(UUID::toString)
+                        .reversed())
+                .toList();
+    }
+}
@@ -0,0 +1,68 @@
+package ru.urfu.store.feed.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.urfu.store.feed.model.Comment;
+import ru.urfu.store.feed.service.FeedDeletionReaper;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FeedDeletionTest extends DatabaseTest {
+
+    private final FeedRepository feedRepository = new FeedRepository(jdbcTemplate);
+    private final CommentRepository commentRepository = new CommentRepository(jdbcTemplate);
+    private final UserStarRepository userStarRepository = new UserStarRepository(jdbcTemplate);
+    private final FeedDeletionRepository feedDeletionRepository = new FeedDeletionRepository(jdbcTemplate);
+
+    @Test
+    void reaperDeletesInBatchesAndResumesFromRecordedProgress() {
+        // Удаления, оставшиеся в базе от других прогонов, не должны встать в очередь раньше
+        jdbcTemplate.update("UPDATE feed_deletion SET finished = now() WHERE finished IS NULL",
+                new MapSqlParameterSource());
+        var feedId = insertFeed(Instant.now());
+        for (var i = 0; i < 3; i++) {
+            commentRepository.insert(Comment.builder().text("text").userId(UUID.randomUUID()).feedId(feedId).build());
+        }
+        feedRepository.like(feedId, UUID.randomUUID());
+        userStarRepository.star(UUID.randomUUID(), feedId);
+
+        var tombstone = feedDeletionRepository.tombstone(feedId).orElseThrow();
+        assertThat(tombstone.getCommentsTotal()).isEqualTo(3);
+        assertThat(feedRepository.findById(feedId)).isEmpty();
+
+        reaper().reap();
+        reaper().reap();
+        var progress = feedDeletionRepository.findById(feedId).orElseThrow();
+        assertThat(progress.getFinished()).isNull();
+        assertThat(progress.getCommentsDeleted()).isEqualTo(3);
+        assertThat(progress.getLikesDeleted()).isEqualTo(1);
+
+        // Новый экземпляр, как после перезапуска, продолжает с записанного прогресса
+        reaper().reap();
+        var finished = feedDeletionRepository.findById(feedId).orElseThrow();
+        assertThat(finished.getFinished()).isNotNull();
+        assertThat(finished.getStarsDeleted()).isEqualTo(1);
+        assertThat(count("SELECT COUNT(*) FROM comment WHERE feed_id = :feedId", feedId)).isZero();
+        assertThat(count("SELECT COUNT(*) FROM user_like WHERE feed_id = :feedId", feedId)).isZero();
+        assertThat(count("SELECT COUNT(*) FROM user_star WHERE feed_id = :feedId", feedId)).isZero();
+    }
+
+    private FeedDeletionReaper reaper() {
+        var transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        var reaper = new FeedDeletionReaper(feedDeletionRepository, commentRepository, feedRepository,
+                userStarRepository, new TransactionTemplate(transactionManager));
+        ReflectionTestUtils.setField(reaper, "batchSize", 2);
+        return reaper;
+    }
+}
@@ -0,0 +1,328 @@
+package ru.urfu.store.feed.repository;
+
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import ru.urfu.store.feed.model.ChangeEvent;
+import ru.urfu.store.feed.model.ChangeType;
+import ru.urfu.store.feed.model.Comment;
+import ru.urfu.store.feed.model.Feed;
+import ru.urfu.store.feed.model.FeedCounterDelta;
+import ru.urfu.store.feed.model.UserLike;
+import ru.urfu.store.feed.model.UserStar;
+import ru.urfu.store.feed.model.dto.FeedView;
+import ru.urfu.store.feed.model.dto.PageCursor;
+import ru.urfu.store.feed.model.dto.SearchCursor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Прогоняет через {@code EXPLAIN} каждый SQL-запрос репозиториев на заполненной локальной базе
+ * и падает, если в плане есть последовательное сканирование большой таблицы.
+ * <p>
+ * Запускается только при заданной {@code FEED_QUERY_PLAN_DB_URL} (а также {@code FEED_QUERY_PLAN_DB_USER}
+ * и {@code FEED_QUERY_PLAN_DB_PASS}): миграции накатываются на эту базу, а тестовые данные
+ * вставляются в транзакции, которая в конце откатывается.
+ */
+@EnabledIfEnvironmentVariable(named = "FEED_QUERY_PLAN_DB_URL", matches = ".+")
+class QueryPlanTest {
+
+    private static final Set<String> LARGE_TABLES = Set.of("feed", "comment", "user_like", "user_star", "feed_outbox");
+
+    /**
+     * Служебные таблицы, имя которых начинается с имени большой, но которые сами остаются маленькими.
+     */
+    private static final Set<String> SMALL_TABLES = Set.of(
+            "feed_deletion", "feed_outbox_relay", "feed_cache", "comment_default", "user_like_default");
+
+    /**
+     * Запросы, которым полное сканирование нужно по смыслу.
+     */
+    private static final Set<String> ALLOWED_SEQ_SCANS = Set.of(
+            "SELECT COUNT(*) FROM feed"
+    );
+
+    private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+
+    private static SingleConnectionDataSource dataSource;
+    private static final Set<String> violations = new LinkedHashSet<>();
+
+    private static FeedRepository feedRepository;
+    private static CommentRepository commentRepository;
+    private static UserStarRepository userStarRepository;
+    private static FeedSearchRepository feedSearchRepository;
+    private static FeedDeletionRepository feedDeletionRepository;
+    private static OutboxRepository outboxRepository;
+    private static SharedFeedCacheRepository sharedFeedCacheRepository;
+    private static PartitionRepository partitionRepository;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        dataSource = new SingleConnectionDataSource(
+                System.getenv("FEED_QUERY_PLAN_DB_URL"),
+                System.getenv("FEED_QUERY_PLAN_DB_USER"),
+                System.getenv("FEED_QUERY_PLAN_DB_PASS"),
+                true
+        );
+
+        var liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setChangeLog("classpath:db/changelog/db.changelog-master.yaml");
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.afterPropertiesSet();
+
+        var connection = dataSource.getConnection();
+        connection.setAutoCommit(false);
+        seed(connection);
+
+        var jdbcTemplate = new NamedParameterJdbcTemplate(new ExplainingDataSource(dataSource));
+        feedRepository = new FeedRepository(jdbcTemplate);
+        commentRepository = new CommentRepository(jdbcTemplate);
+        userStarRepository = new UserStarRepository(jdbcTemplate);
+        feedSearchRepository = new FeedSearchRepository(jdbcTemplate);
+        feedDeletionRepository = new FeedDeletionRepository(jdbcTemplate);
+        outboxRepository = new OutboxRepository(jdbcTemplate);
+        sharedFeedCacheRepository = new SharedFeedCacheRepository(jdbcTemplate);
+        partitionRepository = new PartitionRepository(jdbcTemplate);
+    }
+
+    @AfterAll
+    static void tearDown() throws SQLException {
+        if (dataSource != null) {
+            dataSource.getConnection().rollback();
+            dataSource.destroy();
+        }
+    }
+
+    @Test
+    void repositoryStatementsDoNotSeqScanLargeTables() throws SQLException {
+        var connection = dataSource.getConnection();
+        UUID feedId;
+        UUID otherFeedId;
+        UUID userId;
+        try (var statement = connection.createStatement()) {
+            var rs = statement.executeQuery("SELECT id FROM feed ORDER BY created DESC LIMIT 2");
+            rs.next();
+            feedId = rs.getObject(1, UUID.class);
+            rs.next();
+            otherFeedId = rs.getObject(1, UUID.class);
+            rs = statement.executeQuery("SELECT user_id FROM user_star LIMIT 1");
+            rs.next();
+            userId = rs.getObject(1, UUID.class);
+        }
+
+        var feed = feedRepository.findById(feedId).orElseThrow();
+        var cursor = new PageCursor(feed.getCreated().toInstant(), feed.getId());
+        feedRepository.findAll(100, 1000);
+        feedRepository.findAllAfter(cursor, 100);
+        feedRepository.findAll(100, 0, FeedView.SUMMARY);
+        feedRepository.findAllByIds(List.of(feedId, otherFeedId), FeedView.SUMMARY);
+        userStarRepository.findStarred(userId, 100, 0);
+        userStarRepository.findStarredAfter(userId, cursor, 100);
+        feedRepository.countStarred(userId);
+        feedRepository.estimateCountAll();
+        feedRepository.findAllByIds(List.of(feedId, otherFeedId));
+        feedRepository.findExistingIds(List.of(feedId, otherFeedId));
+        feedRepository.findUserFlags(userId, List.of(feedId, otherFeedId));
+        feedRepository.save(Feed.builder().title("title").text("text").build());
+        feedRepository.save(feed);
+        feedRepository.like(feedId, UUID.randomUUID());
+        feedRepository.unlike(feedId, userId);
+        feedRepository.insertLikes(List.of(new UserLike(UUID.randomUUID(), feedId)));
+        feedRepository.incrementCounters(Map.of(feedId, new FeedCounterDelta(1, 1, 1)));
+        feedRepository.incrementWatchCounts(Map.of(feedId, 1L));
+        var batch = feedRepository.lockBatchForReconciliation(null, 100);
+        feedRepository.reconcileCounters(batch);
+        feedRepository.lockBatchForReconciliation(batch.getLast(), 100);
+
+        sharedFeedCacheRepository.putAll(Map.of(feedId, new SharedFeedCacheRepository.Candidate(
+                feed.getVersion(), feed.getModified().toInstant(), "{}")));
+        sharedFeedCacheRepository.findAll(List.of(feedId, otherFeedId), Duration.ofSeconds(5));
+        sharedFeedCacheRepository.evict(List.of(feedId));
+        sharedFeedCacheRepository.purgeExpired(Duration.ofSeconds(5));
+        sharedFeedCacheRepository.notifyInvalidation(new SharedFeedCacheRepository.Invalidation(feedId, 1));
+
+        var inserted = Comment.builder().text("text").userId(userId).feedId(feedId).build();
+        commentRepository.insert(inserted);
+        commentRepository.update(inserted);
+        commentRepository.insertAll(List.of(Comment.builder()
+                .id(UUID.randomUUID()).text("text").userId(userId).feedId(feedId).build()));
+        var comments = commentRepository.findByFeedId(feedId, null, 5);
+        commentRepository.findByFeedId(feedId, PageCursor.decode(comments.getNextCursor()), 5);
+        commentRepository.findByUserId(userId, null, 100);
+        commentRepository.streamByFeedId(feedId, comment -> {
+        });
+
+        var searchQuery = "1001 or 1002 or 1003 or 1004 or 1005 or 1006 or 1007 or 1008 or 1009 or 1010 or 1011 or 1012";
+        var hits = feedSearchRepository.search(searchQuery, null, 10);
+        feedSearchRepository.search(searchQuery, SearchCursor.decode(hits.getNextCursor()), 10);
+
+        userStarRepository.star(UUID.randomUUID(), feedId);
+        userStarRepository.unStar(userId, feedId);
+        userStarRepository.starAll(List.of(new UserStar(UUID.randomUUID(), feedId)));
+
+        var deletion = feedDeletionRepository.tombstone(otherFeedId).orElseThrow();
+        feedDeletionRepository.findById(otherFeedId);
+        feedDeletionRepository.lockNextPending();
+        commentRepository.deleteByFeedId(otherFeedId, deletion.getFeedCreated(), 1000);
+        feedRepository.deleteLikes(otherFeedId, deletion.getFeedCreated(), 1000);
+        commentRepository.deleteByFeedId(otherFeedId, null, 1000);
+        feedRepository.deleteLikes(otherFeedId, null, 1000);
+        userStarRepository.delete(otherFeedId, 1000);
+        feedDeletionRepository.recordProgress(otherFeedId, 10, 10, 3, true);
+
+        outboxRepository.appendAll(List.of(
+                ChangeEvent.of(ChangeType.FEED_LIKED, feedId, userId, null),
+                ChangeEvent.of(ChangeType.FEED_DELETED, otherFeedId, null, null)));
+        var position = outboxRepository.lockRelayPosition("query-plan-test").orElseThrow();
+        outboxRepository.findAfter(position, 1000);
+        outboxRepository.saveRelayPosition("query-plan-test", position);
+        outboxRepository.deleteOlderThan(Instant.now().minus(Duration.ofDays(7)), 1000);
+
+        partitionRepository.createPartitions("comment", Instant.now(), Instant.now().plus(Duration.ofDays(90)));
+        var partition = partitionRepository.findPartitions("comment").getFirst();
+        partitionRepository.tryLock(partition);
+        partitionRepository.findArchiveHorizon();
+        partitionRepository.findArchivedFeeds(PartitionRepository.LIKES, List.of(feedId, otherFeedId));
+
+        assertThat(violations).isEmpty();
+    }
+
+    private static void seed(Connection connection) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute("""
+                    INSERT INTO feed (title, text, created)
+                    SELECT 'title ' || g, repeat('text ', 50), now() - g * interval '1 minute'
+                    FROM generate_series(1, 20000) g
+                    """);
+            statement.execute("SELECT create_monthly_partitions('comment', now() - interval '20000 minutes', now())");
+            statement.execute("SELECT create_monthly_partitions('user_like', now() - interval '20000 minutes', now())");
+            statement.execute("""
+                    INSERT INTO user_like (user_id, feed_id, feed_created)
+                    SELECT gen_random_uuid(), f.id, f.created FROM feed f, generate_series(1, 10)
+                    """);
+            statement.execute("""
+                    INSERT INTO user_star (user_id, feed_id, feed_created)
+                    SELECT gen_random_uuid(), f.id, f.created FROM feed f, generate_series(1, 3)
+                    """);
+            statement.execute("""
+                    INSERT INTO comment (text, user_id, feed_id, feed_created)
+                    SELECT 'comment', gen_random_uuid(), f.id, f.created FROM feed f, generate_series(1, 10)
+                    """);
+            statement.execute("ANALYZE feed, comment, user_like, user_star");
+        }
+    }
+
+    private static void explain(Connection connection, String sql, List<Invocation> parameters) throws Exception {
+        if (ALLOWED_SEQ_SCANS.contains(sql.strip())) {
+            return;
+        }
+        try (var explain = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (var parameter : parameters) {
+                parameter.method().invoke(explain, parameter.args());
+            }
+            var plan = new StringBuilder();
+            try (var rs = explain.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+            var matcher = SEQ_SCAN.matcher(plan);
+            while (matcher.find()) {
+                var relation = matcher.group(1);
+                if (isLargeTable(relation)) {
+                    violations.add("Seq Scan on " + relation + " in:\n" + sql.strip() + "\n" + plan);
+                }
+            }
+        }
+    }
+
+    private static boolean isLargeTable(String relation) {
+        if (SMALL_TABLES.contains(relation)) {
+            return false;
+        }
+        return LARGE_TABLES.stream()
+                .anyMatch(table -> relation.equals(table) || relation.startsWith(table + "_"));
+    }
+
+    private record Invocation(Method method, Object[] args) {
+    }
+
+    /**
+     * Перед выполнением каждого запроса выполняет для него {@code EXPLAIN} с теми же параметрами.
+     */
+    private static class ExplainingDataSource extends DelegatingDataSource {
+
+        ExplainingDataSource(SingleConnectionDataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            var connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(
+                    getClass().getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        var result = invoke(connection, method, args);
+                        if (method.getName().equals("prepareStatement") && args[0] instanceof String sql) {
+                            return explaining(connection, (PreparedStatement) result, sql);
+                        }
+                        return result;
+                    });
+        }
+
+        private static PreparedStatement explaining(Connection connection, PreparedStatement target, String sql) {
+            var parameters = new ArrayList<Invocation>();
+            var firstBatch = new ArrayList<Invocation>();
+            InvocationHandler handler = (proxy, method, args) -> {
+                var name = method.getName();
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    parameters.add(new Invocation(method, args));
+                } else if (name.equals("addBatch") && firstBatch.isEmpty()) {
+                    firstBatch.addAll(parameters);
+                } else if (name.equals("executeBatch")) {
+                    explain(connection, sql, firstBatch);
+                } else if (name.startsWith("execute")) {
+                    explain(connection, sql, parameters);
+                }
+                return invoke(target, method, args);
+            };
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    ExplainingDataSource.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    handler);
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ru.urfu.store.feed.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserFeedFlagsTest extends DatabaseTest {
+
+    @Test
+    void flagsOfWholePageAreFoundForThatUserOnly() {
+        var feedRepository = new FeedRepository(jdbcTemplate);
+        var userStarRepository = new UserStarRepository(jdbcTemplate);
+        var userId = UUID.randomUUID();
+        var likedLastMonth = insertFeed(Instant.now().minus(40, ChronoUnit.DAYS));
+        var starred = insertFeed(Instant.now());
+        var untouched = insertFeed(Instant.now());
+
+        feedRepository.like(likedLastMonth, userId);
+        userStarRepository.star(userId, starred);
+        feedRepository.like(untouched, UUID.randomUUID());
+
+        var flags = feedRepository.findUserFlags(userId, List.of(likedLastMonth, starred, untouched));
+
+        assertThat(flags.liked()).containsExactly(likedLastMonth);
+        assertThat(flags.starred()).containsExactly(starred);
+        assertThat(feedRepository.findUserFlags(UUID.randomUUID(), List.of(likedLastMonth, starred)).liked())
+                .isEmpty();
+    }
+}
@@ -0,0 +1,74 @@
+package ru.urfu.store.feed.service;
+
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import ru.urfu.store.feed.model.Comment;
+import ru.urfu.store.feed.model.dto.EngagementEvent;
+import ru.urfu.store.feed.model.dto.EngagementResult;
+import ru.urfu.store.feed.model.dto.EngagementStatus;
+import ru.urfu.store.feed.model.dto.EngagementType;
+import ru.urfu.store.feed.repository.CommentRepository;
+import ru.urfu.store.feed.repository.FeedRepository;
+import ru.urfu.store.feed.repository.OutboxRepository;
+import ru.urfu.store.feed.repository.PartitionRepository;
+import ru.urfu.store.feed.repository.UserStarRepository;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EngagementIngestionServiceTest {
+
+    private final FeedRepository feedRepository = mock(FeedRepository.class);
+    private final CommentRepository commentRepository = mock(CommentRepository.class);
+    private final EngagementIngestionService service = new EngagementIngestionService(
+            feedRepository,
+            commentRepository,
+            mock(UserStarRepository.class),
+            mock(OutboxRepository.class),
+            mock(PartitionRepository.class),
+            mock(FeedCache.class),
+            mock(ApplicationEventPublisher.class),
+            Validation.buildDefaultValidatorFactory().getValidator()
+    );
+    private final UUID feedId = UUID.randomUUID();
+    private final UUID userId = UUID.randomUUID();
+
+    @Test
+    void commentsFailingCommentRequestConstraintsAreRejectedOneByOne() {
+        when(feedRepository.findExistingIds(anyCollection())).thenReturn(Set.of(feedId));
+        when(commentRepository.insertAll(anyList())).thenReturn(new int[]{1});
+
+        var response = service.ingest(List.of(
+                comment("   "),
+                comment("Хорошая публикация"),
+                comment(null)
+        ));
+
+        assertThat(response.getResults()).extracting(EngagementResult::getStatus).containsExactly(
+                EngagementStatus.INVALID, EngagementStatus.APPLIED, EngagementStatus.INVALID);
+        assertThat(response.getRejected()).isEqualTo(2);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Comment>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(commentRepository).insertAll(inserted.capture());
+        assertThat(inserted.getValue()).extracting(Comment::getText).containsExactly("Хорошая публикация");
+    }
+
+    private EngagementEvent comment(String text) {
+        return EngagementEvent.builder()
+                .type(EngagementType.COMMENT)
+                .feedId(feedId)
+                .userId(userId)
+                .text(text)
+                .build();
+    }
+}
@@ -0,0 +1,34 @@
+package ru.urfu.store.feed.service;
+
+import org.junit.jupiter.api.Test;
+import ru.urfu.store.feed.model.dto.exception.TooManyExportsException;
+
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExportLimiterTest {
+
+    @Test
+    void exportsOverLimitAreRejectedUntilOneFinishes() {
+        var limiter = new ExportLimiter(2);
+        var first = limiter.acquire();
+        limiter.acquire();
+
+        assertThatThrownBy(limiter::acquire).isInstanceOf(TooManyExportsException.class);
+
+        first.close();
+        assertThatNoException().isThrownBy(limiter::acquire);
+    }
+
+    @Test
+    void permitIsReleasedOnce() {
+        var limiter = new ExportLimiter(1);
+        var permit = limiter.acquire();
+
+        permit.close();
+        permit.close();
+        limiter.acquire();
+
+        assertThatThrownBy(limiter::acquire).isInstanceOf(TooManyExportsException.class);
+    }
+}
@@ -0,0 +1,170 @@
+package ru.urfu.store.feed.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.urfu.store.feed.model.Feed;
+import ru.urfu.store.feed.model.dto.FeedDto;
+import ru.urfu.store.feed.repository.FeedRepository;
+import ru.urfu.store.feed.repository.SharedFeedCacheRepository;
+import ru.urfu.store.feed.repository.SharedFeedCacheRepository.Entry;
+import ru.urfu.store.feed.repository.SharedFeedCacheRepository.Invalidation;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FeedCacheTest {
+
+    private final FeedRepository feedRepository = mock(FeedRepository.class);
+    private final SharedFeedCacheRepository sharedCache = mock(SharedFeedCacheRepository.class);
+    private final ReadRouting readRouting = mock(ReadRouting.class);
+    private final JsonMapper jsonMapper = mock(JsonMapper.class);
+    private final UUID feedId = UUID.randomUUID();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void feedIsLoadedOnce() {
+        when(feedRepository.findAllByIds(anyCollection())).thenReturn(List.of(feed(1, 3)));
+        var cache = cache(false);
+
+        assertThat(cache.getFeed(feedId)).hasValueSatisfying(dto -> assertThat(dto.getLikesCount()).isEqualTo(3));
+        assertThat(cache.getFeed(feedId)).isPresent();
+
+        verify(feedRepository, times(1)).findAllByIds(anyCollection());
+    }
+
+    @Test
+    void copyOlderThanInvalidatedVersionIsNotKept() {
+        when(feedRepository.findAllByIds(anyCollection())).thenReturn(List.of(feed(1, 0)));
+        var cache = cache(false);
+        cache.getFeed(feedId);
+
+        cache.apply(new Invalidation(feedId, 2));
+        cache.getFeed(feedId);
+        cache.getFeed(feedId);
+
+        verify(feedRepository, times(3)).findAllByIds(anyCollection());
+
+        when(feedRepository.findAllByIds(anyCollection())).thenReturn(List.of(feed(2, 0)));
+        cache.getFeed(feedId);
+        cache.getFeed(feedId);
+
+        verify(feedRepository, times(4)).findAllByIds(anyCollection());
+    }
+
+    @Test
+    void sharedCopyOlderThanInvalidatedVersionIsIgnored() {
+        routeThrough();
+        var cached = feed(1, 0);
+        when(sharedCache.findAll(anyCollection(), any())).thenReturn(Map.of(feedId, new Entry(1, "{}")));
+        when(jsonMapper.readValue("{}", FeedDto.class))
+                .thenReturn(FeedService.mapToDto(cached));
+        when(jsonMapper.writeValueAsString(any())).thenReturn("{}");
+        when(feedRepository.findAllByIds(anyCollection())).thenReturn(List.of(feed(2, 5)));
+        var cache = cache(true);
+
+        assertThat(cache.getFeed(feedId)).hasValueSatisfying(dto -> assertThat(dto.getLikesCount()).isZero());
+        verify(feedRepository, never()).findAllByIds(anyCollection());
+
+        cache.apply(new Invalidation(feedId, 2));
+
+        assertThat(cache.getFeed(feedId)).hasValueSatisfying(dto -> assertThat(dto.getLikesCount()).isEqualTo(5));
+        verify(feedRepository).findAllByIds(anyCollection());
+        verify(sharedCache).putAll(any());
+    }
+
+    @Test
+    void evictionInTransactionWaitsForCommit() {
+        when(feedRepository.findAllByIds(anyCollection())).thenReturn(List.of(feed(1, 0)));
+        var cache = cache(false);
+        cache.getFeed(feedId);
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.evictFeed(feedId);
+        cache.getFeed(feedId);
+
+        verify(feedRepository, times(1)).findAllByIds(anyCollection());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        TransactionSynchronizationManager.clearSynchronization();
+        cache.getFeed(feedId);
+
+        verify(feedRepository, times(2)).findAllByIds(anyCollection());
+    }
+
+    @Test
+    void evictionWithoutTransactionIsImmediate() {
+        when(feedRepository.findAllByIds(anyCollection())).thenReturn(List.of(feed(1, 0)));
+        var cache = cache(false);
+        cache.getFeed(feedId);
+
+        cache.evictFeed(feedId);
+        cache.getFeed(feedId);
+
+        verify(feedRepository, times(2)).findAllByIds(anyCollection());
+    }
+
+    @Test
+    void deletedFeedIsDroppedOnCommitAndBroadcast() {
+        when(feedRepository.findAllByIds(anyCollection())).thenReturn(List.of(feed(1, 0)));
+        var cache = cache(true);
+        routeThrough();
+        when(jsonMapper.writeValueAsString(any())).thenReturn("{}");
+        cache.getFeed(feedId);
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidateDeleted(feedId);
+
+        verify(sharedCache).notifyInvalidation(new Invalidation(feedId, Long.MAX_VALUE));
+        verify(sharedCache).evict(List.of(feedId));
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        TransactionSynchronizationManager.clearSynchronization();
+        when(feedRepository.findAllByIds(anyCollection())).thenReturn(List.of());
+
+        assertThat(cache.getFeed(feedId)).isEmpty();
+    }
+
+    private FeedCache cache(boolean sharedEnabled) {
+        return new FeedCache(feedRepository, sharedCache, readRouting, jsonMapper,
+                100, Duration.ofMinutes(1), 5, sharedEnabled, new SimpleMeterRegistry());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void routeThrough() {
+        when(readRouting.primary(any())).thenAnswer(invocation -> ((Supplier<Object>) invocation.getArgument(0)).get());
+    }
+
+    private Feed feed(long version, long likes) {
+        return Feed.builder()
+                .id(feedId)
+                .title("title")
+                .text("text")
+                .likesCount(likes)
+                .version(version)
+                .modified(ZonedDateTime.now())
+                .build();
+    }
+}
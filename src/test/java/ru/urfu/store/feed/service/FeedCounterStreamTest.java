@@ -0,0 +1,106 @@
+package ru.urfu.store.feed.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import ru.urfu.store.feed.model.Feed;
+import ru.urfu.store.feed.model.FeedCounterDelta;
+import ru.urfu.store.feed.model.dto.FeedCountersDto;
+import ru.urfu.store.feed.repository.FeedRepository;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FeedCounterStreamTest {
+
+    private final FeedRepository feedRepository = mock(FeedRepository.class);
+    private final JsonMapper jsonMapper = mock(JsonMapper.class);
+    private final FeedCounterStream stream = new FeedCounterStream(feedRepository, jsonMapper, Duration.ofMinutes(1));
+    private final UUID feedId = UUID.randomUUID();
+
+    @AfterEach
+    void tearDown() {
+        stream.close();
+    }
+
+    @Test
+    void eventsWithinTickAreCoalesced() {
+        when(jsonMapper.writeValueAsString(any())).thenReturn("{}");
+        when(feedRepository.findAllByIds(anyCollection())).thenReturn(List.of(Feed.builder()
+                .id(feedId)
+                .likesCount(12L)
+                .commentsCount(5L)
+                .build()));
+        stream.subscribe(feedId, FeedCountersDto.builder().feedId(feedId).build());
+
+        stream.onActivity(FeedActivityEvent.counters(feedId, new FeedCounterDelta(1, 0, 0)));
+        stream.onActivity(FeedActivityEvent.counters(feedId, new FeedCounterDelta(1, 0, 1)));
+        stream.onActivity(FeedActivityEvent.views(feedId, 7));
+        stream.tick();
+
+        verify(feedRepository, times(1)).findAllByIds(Set.of(feedId));
+        var sent = ArgumentCaptor.forClass(Object.class);
+        verify(jsonMapper, times(2)).writeValueAsString(sent.capture());
+        var counters = (FeedCountersDto) sent.getAllValues().getLast();
+        assertThat(counters.getLikesCount()).isEqualTo(12L);
+        assertThat(counters.getLikesDelta()).isEqualTo(2L);
+        assertThat(counters.getCommentsDelta()).isEqualTo(1L);
+        assertThat(counters.getStarsDelta()).isZero();
+        assertThat(counters.getWatchDelta()).isEqualTo(7L);
+    }
+
+    @Test
+    void tickWithoutNewEventsReadsNothing() {
+        when(jsonMapper.writeValueAsString(any())).thenReturn("{}");
+        when(feedRepository.findAllByIds(anyCollection())).thenReturn(List.of(Feed.builder().id(feedId).build()));
+        stream.subscribe(feedId, FeedCountersDto.builder().feedId(feedId).build());
+        stream.onActivity(FeedActivityEvent.views(feedId, 1));
+
+        stream.tick();
+        stream.tick();
+
+        verify(feedRepository, times(1)).findAllByIds(anyCollection());
+    }
+
+    @Test
+    void unsentUpdatesKeepLatestCountersAndSumDeltas() {
+        var earlier = new FeedCounterStream.Update(FeedCountersDto.builder()
+                .feedId(feedId).likesCount(3L).watchCount(10L)
+                .likesDelta(1L).starsDelta(0L).commentsDelta(0L).watchDelta(4L)
+                .build(), "earlier");
+        var later = new FeedCounterStream.Update(FeedCountersDto.builder()
+                .feedId(feedId).likesCount(5L).watchCount(11L)
+                .likesDelta(2L).starsDelta(0L).commentsDelta(1L).watchDelta(1L)
+                .build(), "later");
+
+        assertThat(FeedCounterStream.Update.merge(null, later)).isSameAs(later);
+        var merged = FeedCounterStream.Update.merge(earlier, later);
+        assertThat(merged.data()).isNull();
+        assertThat(merged.counters().getLikesCount()).isEqualTo(5L);
+        assertThat(merged.counters().getWatchCount()).isEqualTo(11L);
+        assertThat(merged.counters().getLikesDelta()).isEqualTo(3L);
+        assertThat(merged.counters().getCommentsDelta()).isEqualTo(1L);
+        assertThat(merged.counters().getWatchDelta()).isEqualTo(5L);
+    }
+
+    @Test
+    void eventsOfFeedsWithoutSubscribersAreDropped() {
+        stream.onActivity(FeedActivityEvent.counters(feedId, new FeedCounterDelta(1, 0, 0)));
+
+        stream.tick();
+
+        verify(feedRepository, never()).findAllByIds(anyCollection());
+    }
+}
@@ -0,0 +1,91 @@
+package ru.urfu.store.feed.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.urfu.store.feed.model.FeedDeletion;
+import ru.urfu.store.feed.repository.CommentRepository;
+import ru.urfu.store.feed.repository.FeedDeletionRepository;
+import ru.urfu.store.feed.repository.FeedRepository;
+import ru.urfu.store.feed.repository.UserStarRepository;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FeedDeletionReaperTest {
+
+    private final FeedDeletionRepository feedDeletionRepository = mock(FeedDeletionRepository.class);
+    private final CommentRepository commentRepository = mock(CommentRepository.class);
+    private final FeedRepository feedRepository = mock(FeedRepository.class);
+    private final UserStarRepository userStarRepository = mock(UserStarRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final FeedDeletionReaper reaper = new FeedDeletionReaper(feedDeletionRepository, commentRepository,
+            feedRepository, userStarRepository, new TransactionTemplate(transactionManager));
+    private final UUID feedId = UUID.randomUUID();
+    private final Instant feedCreated = Instant.parse("2026-01-15T12:00:00Z");
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(feedDeletionRepository.lockNextPending()).thenReturn(Optional.of(FeedDeletion.builder()
+                .feedId(feedId)
+                .feedCreated(feedCreated)
+                .build()));
+        ReflectionTestUtils.setField(reaper, "batchSize", 5);
+    }
+
+    @Test
+    void fullBatchOfCommentsLeavesLikesAndStarsForNextRun() {
+        when(commentRepository.deleteByFeedId(feedId, feedCreated, 5)).thenReturn(5);
+
+        reaper.reap();
+
+        verify(feedRepository, never()).deleteLikes(any(), any(), anyInt());
+        verify(userStarRepository, never()).delete(any(), anyInt());
+        verify(feedDeletionRepository).recordProgress(feedId, 5, 0, 0, false);
+    }
+
+    @Test
+    void batchIsSharedBetweenCommentsLikesAndStars() {
+        when(commentRepository.deleteByFeedId(feedId, feedCreated, 5)).thenReturn(3);
+        when(feedRepository.deleteLikes(feedId, feedCreated, 2)).thenReturn(2);
+
+        reaper.reap();
+
+        verify(userStarRepository, never()).delete(any(), anyInt());
+        verify(feedDeletionRepository).recordProgress(feedId, 3, 2, 0, false);
+    }
+
+    @Test
+    void partialBatchFinishesDeletion() {
+        when(commentRepository.deleteByFeedId(feedId, feedCreated, 5)).thenReturn(1);
+        when(feedRepository.deleteLikes(feedId, feedCreated, 4)).thenReturn(1);
+        when(userStarRepository.delete(feedId, 3)).thenReturn(2);
+
+        reaper.reap();
+
+        verify(feedDeletionRepository).recordProgress(feedId, 1, 1, 2, true);
+    }
+
+    @Test
+    void nothingPendingDeletesNothing() {
+        when(feedDeletionRepository.lockNextPending()).thenReturn(Optional.empty());
+
+        reaper.reap();
+
+        verify(commentRepository, never()).deleteByFeedId(any(), any(), anyInt());
+        verify(feedDeletionRepository, never()).recordProgress(any(), anyInt(), anyInt(), anyInt(), anyBoolean());
+    }
+}
@@ -0,0 +1,95 @@
+package ru.urfu.store.feed.service;
+
+import org.junit.jupiter.api.Test;
+import ru.urfu.store.feed.model.dto.FeedDto;
+import ru.urfu.store.feed.model.dto.FeedListItem;
+import ru.urfu.store.feed.model.dto.Paging;
+import ru.urfu.store.feed.model.dto.TotalCountMode;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FeedEtagsTest {
+
+    private final FeedDto feed = FeedDto.builder()
+            .id(UUID.randomUUID())
+            .title("title")
+            .text("text")
+            .likesCount(3L)
+            .starsCount(2L)
+            .commentsCount(1L)
+            .watchCount(100L)
+            .created(ZonedDateTime.parse("2025-03-01T10:00:00Z"))
+            .updated(ZonedDateTime.parse("2025-03-02T10:00:00Z"))
+            .modified(ZonedDateTime.parse("2025-03-03T10:00:00Z"))
+            .build();
+
+    @Test
+    void feedEtagIsWeakAndStable() {
+        var etag = FeedEtags.feed(feed);
+
+        assertThat(etag).startsWith("W/\"").endsWith("\"");
+        assertThat(FeedEtags.feed(feed.toBuilder().build())).isEqualTo(etag);
+    }
+
+    @Test
+    void feedEtagIgnoresViews() {
+        assertThat(FeedEtags.feed(feed.toBuilder().watchCount(101L).build())).isEqualTo(FeedEtags.feed(feed));
+    }
+
+    @Test
+    void feedEtagChangesWithCountersEditsAndUserFlags() {
+        var etag = FeedEtags.feed(feed);
+
+        assertThat(FeedEtags.feed(feed.toBuilder().likesCount(4L).build())).isNotEqualTo(etag);
+        assertThat(FeedEtags.feed(feed.toBuilder().starsCount(3L).build())).isNotEqualTo(etag);
+        assertThat(FeedEtags.feed(feed.toBuilder().commentsCount(2L).build())).isNotEqualTo(etag);
+        assertThat(FeedEtags.feed(feed.toBuilder().updated(feed.getUpdated().plusSeconds(1)).build()))
+                .isNotEqualTo(etag);
+        assertThat(FeedEtags.feed(feed.withUserFlags(true, false))).isNotEqualTo(etag);
+        assertThat(FeedEtags.feed(feed.withUserFlags(true, false)))
+                .isNotEqualTo(FeedEtags.feed(feed.withUserFlags(false, true)));
+    }
+
+    @Test
+    void pageEtagDependsOnItemsAndPaging() {
+        var etag = FeedEtags.page(page(List.of(feed), "next"));
+
+        assertThat(FeedEtags.page(page(List.of(feed), "next"))).isEqualTo(etag);
+        assertThat(FeedEtags.page(page(List.of(feed.toBuilder().watchCount(500L).build()), "next")))
+                .isEqualTo(etag);
+        assertThat(FeedEtags.page(page(List.of(feed.toBuilder().likesCount(9L).build()), "next")))
+                .isNotEqualTo(etag);
+        assertThat(FeedEtags.page(page(List.of(feed), "other"))).isNotEqualTo(etag);
+        assertThat(FeedEtags.page(page(List.of(), "next"))).isNotEqualTo(etag);
+    }
+
+    @Test
+    void lastModifiedFallsBackToUpdatedAndCreated() {
+        assertThat(FeedEtags.lastModified(feed)).isEqualTo(millis("2025-03-03T10:00:00Z"));
+        assertThat(FeedEtags.lastModified(feed.toBuilder().modified(null).build()))
+                .isEqualTo(millis("2025-03-02T10:00:00Z"));
+        assertThat(FeedEtags.lastModified(feed.toBuilder().modified(null).updated(null).build()))
+                .isEqualTo(millis("2025-03-01T10:00:00Z"));
+        assertThat(FeedEtags.lastModified(FeedDto.builder().build())).isEqualTo(-1);
+    }
+
+    @Test
+    void pageLastModifiedIsLatestItem() {
+        var later = feed.toBuilder().id(UUID.randomUUID()).modified(ZonedDateTime.parse("2025-04-01T00:00:00Z")).build();
+
+        assertThat(FeedEtags.lastModified(page(List.of(feed, later), null))).isEqualTo(millis("2025-04-01T00:00:00Z"));
+        assertThat(FeedEtags.lastModified(page(List.of(), null))).isEqualTo(-1);
+    }
+
+    private static long millis(String time) {
+        return ZonedDateTime.parse(time).toInstant().toEpochMilli();
+    }
+
+    private static Paging<FeedListItem> page(List<FeedListItem> items, String nextCursor) {
+        return new Paging<>(10L, 20, 0, items, nextCursor, TotalCountMode.CACHED, nextCursor != null);
+    }
+}
@@ -0,0 +1,185 @@
+package ru.urfu.store.feed.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import ru.urfu.store.feed.config.ReplicaLagMonitor;
+import ru.urfu.store.feed.controller.GlobalExceptionHandler;
+import ru.urfu.store.feed.model.UnlikeOutcome;
+import ru.urfu.store.feed.model.UserFeedFlags;
+import ru.urfu.store.feed.model.WriteOutcome;
+import ru.urfu.store.feed.model.dto.CommentRequest;
+import ru.urfu.store.feed.model.dto.FeedDto;
+import ru.urfu.store.feed.model.dto.FeedListItem;
+import ru.urfu.store.feed.model.dto.FeedView;
+import ru.urfu.store.feed.model.dto.PageCursor;
+import ru.urfu.store.feed.model.dto.Paging;
+import ru.urfu.store.feed.model.dto.TotalCountMode;
+import ru.urfu.store.feed.model.dto.exception.FeedArchivedException;
+import ru.urfu.store.feed.model.dto.exception.ResourceNotFoundException;
+import ru.urfu.store.feed.repository.CommentRepository;
+import ru.urfu.store.feed.repository.FeedDeletionRepository;
+import ru.urfu.store.feed.repository.FeedRepository;
+import ru.urfu.store.feed.repository.FeedSearchRepository;
+import ru.urfu.store.feed.repository.OutboxRepository;
+import ru.urfu.store.feed.repository.UserStarRepository;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class FeedServiceTest {
+
+    private final FeedRepository feedRepository = mock(FeedRepository.class);
+    private final CommentRepository commentRepository = mock(CommentRepository.class);
+    private final UserStarRepository userStarRepository = mock(UserStarRepository.class);
+    private final FeedCache feedCache = mock(FeedCache.class);
+    private final TotalCountProvider totalCountProvider = mock(TotalCountProvider.class);
+    private final OutboxRepository outboxRepository = mock(OutboxRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final FeedService service = new FeedService(
+            feedRepository,
+            commentRepository,
+            userStarRepository,
+            mock(WatchCountBuffer.class),
+            feedCache,
+            totalCountProvider,
+            mock(TrendingService.class),
+            mock(FeedSearchRepository.class),
+            mock(FeedDeletionRepository.class),
+            outboxRepository,
+            mock(FeedCounterStream.class),
+            readRouting(),
+            eventPublisher,
+            mock(JsonMapper.class)
+    );
+    private final UUID feedId = UUID.randomUUID();
+    private final UUID userId = UUID.randomUUID();
+
+    @Test
+    void pageFlagsComeFromOneProbeOnCopies() {
+        var liked = FeedDto.builder().id(UUID.randomUUID()).build();
+        var starred = FeedDto.builder().id(UUID.randomUUID()).build();
+        var plain = FeedDto.builder().id(UUID.randomUUID()).build();
+        when(feedCache.getPage(eq(FeedView.FULL), eq(10), eq(0), any()))
+                .thenReturn(new Paging<>(3L, 10, 0, List.<FeedListItem>of(liked, starred, plain)));
+        when(feedRepository.findUserFlags(eq(userId), anyCollection()))
+                .thenReturn(new UserFeedFlags(Set.of(liked.getId()), Set.of(starred.getId())));
+
+        var page = service.getAllFeeds(10, 0, null, userId, FeedView.FULL);
+
+        verify(feedRepository).findUserFlags(userId, List.of(liked.getId(), starred.getId(), plain.getId()));
+        assertThat(page.getCurrentValues()).extracting(feed -> ((FeedDto) feed).getLikedByMe())
+                .containsExactly(true, false, false);
+        assertThat(page.getCurrentValues()).extracting(feed -> ((FeedDto) feed).getStarredByMe())
+                .containsExactly(false, true, false);
+        assertThat(liked.getLikedByMe()).isNull();
+    }
+
+    @Test
+    void anonymousPageIsNotProbed() {
+        var feed = FeedDto.builder().id(UUID.randomUUID()).build();
+        when(feedCache.getPage(eq(FeedView.FULL), eq(10), eq(0), any()))
+                .thenReturn(new Paging<>(1L, 10, 0, List.<FeedListItem>of(feed)));
+
+        var page = service.getAllFeeds(10, 0, null, null, FeedView.FULL);
+
+        assertThat(page.getCurrentValues()).containsExactly(feed);
+        verify(feedRepository, never()).findUserFlags(any(), anyCollection());
+    }
+
+    @Test
+    void favouritesAreHydratedInStarOrderFromOnePageOfIds() {
+        var cursor = new PageCursor(Instant.parse("2026-01-15T12:00:00Z"), UUID.randomUUID());
+        var newer = FeedDto.builder().id(UUID.randomUUID()).build();
+        var deleted = UUID.randomUUID();
+        var older = FeedDto.builder().id(UUID.randomUUID()).build();
+        var starred = new Paging<>(null, 3, null, List.of(newer.getId(), deleted, older.getId()), "next");
+        starred.setHasMore(true);
+        when(userStarRepository.findStarredAfter(userId, cursor, 3)).thenReturn(starred);
+        when(totalCountProvider.starred(userId)).thenReturn(new TotalCountProvider.TotalCount(7L, TotalCountMode.EXACT));
+        when(feedCache.getFeeds(starred.getCurrentValues()))
+                .thenReturn(Map.of(older.getId(), older, newer.getId(), newer));
+
+        var page = service.getFavourites(userId, 3, null, cursor.encode(), FeedView.FULL);
+
+        assertThat(page.getCurrentValues()).containsExactly(newer, older);
+        assertThat(page.getNextCursor()).isEqualTo("next");
+        assertThat(page.getHasMore()).isTrue();
+        assertThat(page.getTotalCount()).isEqualTo(7L);
+        verify(userStarRepository, never()).findStarred(any(), any(), any());
+        verify(feedRepository, never()).findAllByIds(anyCollection());
+    }
+
+    @Test
+    void writesToMissingFeedAreNotFound() {
+        when(feedRepository.like(feedId, userId)).thenReturn(WriteOutcome.FEED_NOT_FOUND);
+        when(feedRepository.unlike(feedId, userId)).thenReturn(new UnlikeOutcome(false, false, false));
+        when(userStarRepository.star(userId, feedId)).thenReturn(WriteOutcome.FEED_NOT_FOUND);
+        when(userStarRepository.unStar(userId, feedId)).thenReturn(WriteOutcome.FEED_NOT_FOUND);
+        when(commentRepository.insert(any())).thenReturn(WriteOutcome.FEED_NOT_FOUND);
+
+        assertThatThrownBy(() -> service.likeFeed(feedId, userId)).isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> service.unlikeFeed(feedId, userId)).isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> service.starFeed(feedId, userId)).isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> service.unStarFeed(feedId, userId)).isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> service.addComment(new CommentRequest("text", userId, feedId)))
+                .isInstanceOf(ResourceNotFoundException.class);
+
+        verifyNoInteractions(outboxRepository, feedCache, eventPublisher);
+    }
+
+    @Test
+    void repeatedLikeChangesNothing() {
+        when(feedRepository.like(feedId, userId)).thenReturn(WriteOutcome.UNCHANGED);
+
+        service.likeFeed(feedId, userId);
+
+        verifyNoInteractions(outboxRepository, feedCache, eventPublisher);
+    }
+
+    @Test
+    void likeOfArchivedFeedIsConflict() {
+        when(feedRepository.like(feedId, userId)).thenReturn(WriteOutcome.FEED_ARCHIVED);
+
+        var conflict = catchThrowableOfType(FeedArchivedException.class, () -> service.likeFeed(feedId, userId));
+
+        assertThat(new GlobalExceptionHandler().handleFeedArchivedException(conflict).getStatusCode())
+                .isEqualTo(HttpStatus.CONFLICT);
+        verifyNoInteractions(outboxRepository, feedCache, eventPublisher);
+    }
+
+    @Test
+    void commentOnArchivedFeedIsConflict() {
+        when(commentRepository.insert(any())).thenReturn(WriteOutcome.FEED_ARCHIVED);
+        var request = new CommentRequest("text", userId, feedId);
+
+        assertThatThrownBy(() -> service.addComment(request)).isInstanceOf(FeedArchivedException.class);
+
+        verifyNoInteractions(outboxRepository, feedCache, eventPublisher);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ReadRouting readRouting() {
+        var lagMonitor = (ObjectProvider<ReplicaLagMonitor>) mock(ObjectProvider.class);
+        return new ReadRouting(lagMonitor, Duration.ofMinutes(1), 100, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,123 @@
+package ru.urfu.store.feed.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.urfu.store.feed.model.ChangeEvent;
+import ru.urfu.store.feed.model.ChangeType;
+import ru.urfu.store.feed.model.dto.ChangeCursor;
+import ru.urfu.store.feed.repository.OutboxRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxRelayTest {
+
+    private final OutboxRepository outboxRepository = mock(OutboxRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final InMemoryOutboxSink sink = spy(new InMemoryOutboxSink(10));
+    private final OutboxRelay relay = new OutboxRelay(outboxRepository, sink, new TransactionTemplate(transactionManager));
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        ReflectionTestUtils.setField(relay, "batchSize", 2);
+        ReflectionTestUtils.setField(relay, "retention", Duration.ofDays(7));
+    }
+
+    @Test
+    void relayPublishesBatchAndMovesPosition() {
+        var position = new ChangeCursor(5, 10);
+        var events = List.of(event(6, 11), event(6, 12));
+        when(outboxRepository.lockRelayPosition(anyString())).thenReturn(Optional.of(position));
+        when(outboxRepository.findAfter(position, 2)).thenReturn(events);
+
+        relay.relay();
+
+        assertThat(sink.events()).isEqualTo(events);
+        verify(outboxRepository).saveRelayPosition(anyString(), eq(new ChangeCursor(6, 12)));
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void relaySkipsWhenAnotherInstanceHoldsThePosition() {
+        when(outboxRepository.lockRelayPosition(anyString())).thenReturn(Optional.empty());
+
+        relay.relay();
+
+        verify(outboxRepository, never()).findAfter(any(), anyInt());
+        assertThat(sink.events()).isEmpty();
+    }
+
+    @Test
+    void relayKeepsPositionWhenNothingIsNew() {
+        when(outboxRepository.lockRelayPosition(anyString())).thenReturn(Optional.of(ChangeCursor.START));
+        when(outboxRepository.findAfter(ChangeCursor.START, 2)).thenReturn(List.of());
+
+        relay.relay();
+
+        verify(sink, never()).publish(any());
+        verify(outboxRepository, never()).saveRelayPosition(anyString(), any());
+    }
+
+    @Test
+    void failedPublishKeepsPositionAndRollsBack() {
+        when(outboxRepository.lockRelayPosition(anyString())).thenReturn(Optional.of(ChangeCursor.START));
+        when(outboxRepository.findAfter(ChangeCursor.START, 2)).thenReturn(List.of(event(1, 1)));
+        doThrow(new IllegalStateException("sink is down")).when(sink).publish(any());
+
+        assertThatThrownBy(relay::relay).isInstanceOf(IllegalStateException.class);
+
+        verify(outboxRepository, never()).saveRelayPosition(anyString(), any());
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void purgeDeletesUntilBatchIsNotFull() {
+        when(outboxRepository.deleteOlderThan(any(Instant.class), anyInt())).thenReturn(10_000, 10_000, 5);
+
+        relay.purge();
+
+        verify(outboxRepository, times(3)).deleteOlderThan(any(Instant.class), anyInt());
+    }
+
+    @Test
+    void sinkKeepsOnlyTheLatestEvents() {
+        var small = new InMemoryOutboxSink(2);
+
+        small.publish(List.of(event(1, 1), event(1, 2)));
+        small.publish(List.of(event(2, 3)));
+
+        assertThat(small.events()).extracting(ChangeEvent::getId).containsExactly(2L, 3L);
+
+        small.clear();
+        assertThat(small.events()).isEmpty();
+    }
+
+    private static ChangeEvent event(long txid, long id) {
+        var event = ChangeEvent.of(ChangeType.FEED_LIKED, UUID.randomUUID(), UUID.randomUUID(), null);
+        event.setTxid(txid);
+        event.setId(id);
+        return event;
+    }
+}
@@ -0,0 +1,130 @@
+package ru.urfu.store.feed.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import ru.urfu.store.feed.config.ReplicaLagMonitor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReadRoutingTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ReplicaLagMonitor lagMonitor = mock(ReplicaLagMonitor.class);
+    private final UUID writer = UUID.randomUUID();
+    private final UUID reader = UUID.randomUUID();
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void healthyReplicaServesReads() {
+        when(lagMonitor.isHealthy()).thenReturn(true);
+        var routing = routing(lagMonitor);
+
+        assertThat(routing.read(reader, () -> "value")).isEqualTo("value");
+        routing.read(null, () -> null);
+
+        assertThat(reads("replica")).isEqualTo(2);
+        assertThat(reads("primary")).isZero();
+    }
+
+    @Test
+    void recentWriterStaysOnPrimary() {
+        when(lagMonitor.isHealthy()).thenReturn(true);
+        var routing = routing(lagMonitor);
+
+        routing.recordWrite(writer);
+        routing.read(writer, () -> null);
+        routing.read(reader, () -> null);
+        routing.read(null, () -> null);
+
+        assertThat(reads("primary")).isEqualTo(1);
+        assertThat(reads("replica")).isEqualTo(2);
+    }
+
+    @Test
+    void writeOnAnotherInstanceKeepsReadsOnPrimary() {
+        when(lagMonitor.isHealthy()).thenReturn(true);
+        var writingInstance = routing(lagMonitor);
+        var readingInstance = routing(lagMonitor);
+        var response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest(), response));
+        writingInstance.recordWrite(writer);
+
+        var cookie = response.getCookie(ReadRouting.WRITE_COOKIE);
+        assertThat(cookie).isNotNull();
+        assertThat(cookie.getMaxAge()).isEqualTo(60);
+
+        var request = new MockHttpServletRequest();
+        request.setCookies(cookie);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        readingInstance.read(writer, () -> null);
+
+        assertThat(reads("primary")).isEqualTo(1);
+        assertThat(reads("replica")).isZero();
+    }
+
+    @Test
+    void expiredOrMalformedWriteCookieIsIgnored() {
+        when(lagMonitor.isHealthy()).thenReturn(true);
+        var routing = routing(lagMonitor);
+
+        for (var value : List.of(Long.toString(System.currentTimeMillis() - 61_000), "garbage")) {
+            var request = new MockHttpServletRequest();
+            request.setCookies(new Cookie(ReadRouting.WRITE_COOKIE, value));
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+            routing.read(reader, () -> null);
+        }
+
+        assertThat(reads("replica")).isEqualTo(2);
+        assertThat(reads("primary")).isZero();
+    }
+
+    @Test
+    void laggingReplicaIsNotUsed() {
+        when(lagMonitor.isHealthy()).thenReturn(false);
+        var routing = routing(lagMonitor);
+
+        routing.read(reader, () -> null);
+
+        assertThat(reads("primary")).isEqualTo(1);
+        assertThat(reads("replica")).isZero();
+    }
+
+    @Test
+    void withoutReplicaReadsAreNotRouted() {
+        var routing = routing(null);
+
+        routing.recordWrite(writer);
+        assertThat(routing.read(writer, () -> "value")).isEqualTo("value");
+
+        assertThat(reads("primary")).isZero();
+        assertThat(reads("replica")).isZero();
+    }
+
+    @SuppressWarnings("unchecked")
+    private ReadRouting routing(ReplicaLagMonitor monitor) {
+        var provider = (ObjectProvider<ReplicaLagMonitor>) mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(monitor);
+        return new ReadRouting(provider, Duration.ofMinutes(1), 100, meterRegistry);
+    }
+
+    private double reads(String route) {
+        return meterRegistry.get("feed.replica.reads").tag("route", route).counter().count();
+    }
+}
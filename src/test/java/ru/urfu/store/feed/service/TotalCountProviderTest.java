@@ -0,0 +1,87 @@
+package ru.urfu.store.feed.service;
+
+import org.junit.jupiter.api.Test;
+import ru.urfu.store.feed.model.dto.TotalCountMode;
+import ru.urfu.store.feed.repository.FeedRepository;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class TotalCountProviderTest {
+
+    private final FeedRepository feedRepository = mock(FeedRepository.class);
+    private final UUID userId = UUID.randomUUID();
+
+    @Test
+    void exactCountsEveryTime() {
+        when(feedRepository.countAll()).thenReturn(10L, 11L);
+        var provider = provider(TotalCountMode.EXACT);
+
+        assertThat(provider.allFeeds()).isEqualTo(new TotalCountProvider.TotalCount(10L, TotalCountMode.EXACT));
+        assertThat(provider.allFeeds()).isEqualTo(new TotalCountProvider.TotalCount(11L, TotalCountMode.EXACT));
+    }
+
+    @Test
+    void cachedCountsOncePerKey() {
+        when(feedRepository.countAll()).thenReturn(10L, 11L);
+        when(feedRepository.countStarred(userId)).thenReturn(3L, 4L);
+        var provider = provider(TotalCountMode.CACHED);
+
+        assertThat(provider.allFeeds()).isEqualTo(new TotalCountProvider.TotalCount(10L, TotalCountMode.CACHED));
+        assertThat(provider.allFeeds().value()).isEqualTo(10L);
+        assertThat(provider.starred(userId)).isEqualTo(new TotalCountProvider.TotalCount(3L, TotalCountMode.CACHED));
+        assertThat(provider.starred(userId).value()).isEqualTo(3L);
+        verify(feedRepository, times(1)).countAll();
+        verify(feedRepository, times(1)).countStarred(userId);
+    }
+
+    @Test
+    void estimateUsesPlannerStatistics() {
+        when(feedRepository.estimateCountAll()).thenReturn(1000L);
+        var provider = provider(TotalCountMode.ESTIMATE);
+
+        assertThat(provider.allFeeds()).isEqualTo(new TotalCountProvider.TotalCount(1000L, TotalCountMode.ESTIMATE));
+        verify(feedRepository, never()).countAll();
+    }
+
+    @Test
+    void estimateFallsBackToCachedCountWithoutStatistics() {
+        when(feedRepository.estimateCountAll()).thenReturn(-1L);
+        when(feedRepository.countAll()).thenReturn(10L);
+        var provider = provider(TotalCountMode.ESTIMATE);
+
+        assertThat(provider.allFeeds()).isEqualTo(new TotalCountProvider.TotalCount(10L, TotalCountMode.CACHED));
+        assertThat(provider.allFeeds().value()).isEqualTo(10L);
+        verify(feedRepository, times(1)).countAll();
+    }
+
+    @Test
+    void estimateIsCachedForStarred() {
+        when(feedRepository.countStarred(userId)).thenReturn(3L);
+        var provider = provider(TotalCountMode.ESTIMATE);
+
+        assertThat(provider.starred(userId)).isEqualTo(new TotalCountProvider.TotalCount(3L, TotalCountMode.CACHED));
+        verify(feedRepository, never()).estimateCountAll();
+    }
+
+    @Test
+    void noneDoesNotCount() {
+        var provider = provider(TotalCountMode.NONE);
+
+        assertThat(provider.allFeeds()).isEqualTo(new TotalCountProvider.TotalCount(null, TotalCountMode.NONE));
+        assertThat(provider.starred(userId)).isEqualTo(new TotalCountProvider.TotalCount(null, TotalCountMode.NONE));
+        verifyNoInteractions(feedRepository);
+    }
+
+    private TotalCountProvider provider(TotalCountMode mode) {
+        return new TotalCountProvider(feedRepository, mode, Duration.ofMinutes(1), 100);
+    }
+}
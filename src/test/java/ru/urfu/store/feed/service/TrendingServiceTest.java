@@ -0,0 +1,156 @@
+package ru.urfu.store.feed.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.urfu.store.feed.model.FeedCounterDelta;
+import ru.urfu.store.feed.model.dto.FeedDto;
+import ru.urfu.store.feed.model.dto.TrendingFeedDto;
+import ru.urfu.store.feed.repository.TrendingRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TrendingServiceTest {
+
+    private static final Duration HALF_LIFE = Duration.ofHours(6);
+    private static final double LIKE_WEIGHT = 1;
+    private static final double COMMENT_WEIGHT = 3;
+    private static final double VIEW_WEIGHT = 0.1;
+
+    private final TrendingRepository trendingRepository = mock(TrendingRepository.class);
+    private final FeedCache feedCache = mock(FeedCache.class);
+    private final TrendingService trendingService = new TrendingService(trendingRepository, feedCache);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ReflectionTestUtils.setField(trendingService, "halfLife", HALF_LIFE);
+        ReflectionTestUtils.setField(trendingService, "topK", 2);
+        ReflectionTestUtils.setField(trendingService, "likeWeight", LIKE_WEIGHT);
+        ReflectionTestUtils.setField(trendingService, "commentWeight", COMMENT_WEIGHT);
+        ReflectionTestUtils.setField(trendingService, "viewWeight", VIEW_WEIGHT);
+        ReflectionTestUtils.setField(trendingService, "rebuildWindow", Duration.ofDays(2));
+        ReflectionTestUtils.setField(trendingService, "minScore", 0.01);
+        trendingService.init();
+
+        when(feedCache.getFeeds(any())).thenAnswer(invocation -> {
+            var feeds = new HashMap<UUID, FeedDto>();
+            for (var id : (Collection<UUID>) invocation.getArgument(0)) {
+                feeds.put(id, FeedDto.builder().id(id).build());
+            }
+            return feeds;
+        });
+    }
+
+    @Test
+    void eventsAreWeighted() {
+        var liked = UUID.randomUUID();
+        var commented = UUID.randomUUID();
+
+        trendingService.onActivity(FeedActivityEvent.counters(liked, new FeedCounterDelta(2, 0, 0)));
+        trendingService.onActivity(FeedActivityEvent.counters(commented, new FeedCounterDelta(0, 0, 1)));
+        trendingService.onActivity(FeedActivityEvent.views(commented, 10));
+
+        assertThat(scores()).containsExactly(
+                Map.entry(commented, COMMENT_WEIGHT + 10 * VIEW_WEIGHT),
+                Map.entry(liked, 2 * LIKE_WEIGHT));
+    }
+
+    @Test
+    void scoreHalvesAfterHalfLife() {
+        var feedId = UUID.randomUUID();
+        trendingService.onActivity(FeedActivityEvent.counters(feedId, new FeedCounterDelta(1, 0, 0)));
+
+        var epoch = (Instant) ReflectionTestUtils.getField(trendingService, "epoch");
+        ReflectionTestUtils.setField(trendingService, "epoch", epoch.minus(HALF_LIFE));
+
+        assertThat(trendingService.getTrending(1).getFirst().getScore()).isCloseTo(LIKE_WEIGHT / 2, within(1e-3));
+    }
+
+    @Test
+    void newerEventOutranksEqualOlderOne() {
+        var older = UUID.randomUUID();
+        var newer = UUID.randomUUID();
+        trendingService.onActivity(FeedActivityEvent.counters(older, new FeedCounterDelta(1, 0, 0)));
+
+        var epoch = (Instant) ReflectionTestUtils.getField(trendingService, "epoch");
+        ReflectionTestUtils.setField(trendingService, "epoch", epoch.minus(HALF_LIFE));
+        trendingService.onActivity(FeedActivityEvent.counters(newer, new FeedCounterDelta(1, 0, 0)));
+
+        assertThat(ids(trendingService.getTrending(2))).containsExactly(newer, older);
+    }
+
+    @Test
+    void onlyTopKAreKept() {
+        var first = UUID.randomUUID();
+        var second = UUID.randomUUID();
+        var third = UUID.randomUUID();
+        trendingService.onActivity(FeedActivityEvent.counters(first, new FeedCounterDelta(3, 0, 0)));
+        trendingService.onActivity(FeedActivityEvent.counters(second, new FeedCounterDelta(1, 0, 0)));
+        trendingService.onActivity(FeedActivityEvent.counters(third, new FeedCounterDelta(2, 0, 0)));
+
+        assertThat(ids(trendingService.getTrending(10))).containsExactly(first, third);
+        assertThat(ids(trendingService.getTrending(1))).containsExactly(first);
+    }
+
+    @Test
+    void deletedFeedIsReplacedFromRemainingScores() {
+        var first = UUID.randomUUID();
+        var second = UUID.randomUUID();
+        var third = UUID.randomUUID();
+        trendingService.onActivity(FeedActivityEvent.counters(first, new FeedCounterDelta(3, 0, 0)));
+        trendingService.onActivity(FeedActivityEvent.counters(second, new FeedCounterDelta(2, 0, 0)));
+        trendingService.onActivity(FeedActivityEvent.counters(third, new FeedCounterDelta(1, 0, 0)));
+
+        trendingService.onDeleted(new FeedDeletedEvent(first));
+
+        assertThat(ids(trendingService.getTrending(10))).containsExactly(second, third);
+    }
+
+    @Test
+    void removedLikesAreNotSubtracted() {
+        var feedId = UUID.randomUUID();
+        trendingService.onActivity(FeedActivityEvent.counters(feedId, new FeedCounterDelta(1, 0, 0)));
+        trendingService.onActivity(FeedActivityEvent.counters(feedId, new FeedCounterDelta(-1, 0, 0)));
+
+        assertThat(scores()).containsExactly(Map.entry(feedId, LIKE_WEIGHT));
+    }
+
+    @Test
+    void feedWithoutActivityIsNotRanked() {
+        trendingService.onActivity(FeedActivityEvent.counters(UUID.randomUUID(), new FeedCounterDelta(-1, 1, 0)));
+
+        assertThat(trendingService.getTrending(10)).isEmpty();
+    }
+
+    @Test
+    void limitMustBePositive() {
+        assertThatThrownBy(() -> trendingService.getTrending(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Map<UUID, Double> scores() {
+        var result = new LinkedHashMap<UUID, Double>();
+        for (var entry : trendingService.getTrending(10)) {
+            result.put(entry.getFeed().getId(), Math.round(entry.getScore() * 1000) / 1000.0);
+        }
+        return result;
+    }
+
+    private static List<UUID> ids(List<TrendingFeedDto> trending) {
+        return trending.stream().map(entry -> entry.getFeed().getId()).toList();
+    }
+}
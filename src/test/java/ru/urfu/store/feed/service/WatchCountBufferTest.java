@@ -0,0 +1,131 @@
+package ru.urfu.store.feed.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.urfu.store.feed.repository.FeedRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class WatchCountBufferTest {
+
+    private final FeedRepository feedRepository = mock(FeedRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WatchCountBuffer buffer = new WatchCountBuffer(feedRepository, eventPublisher, meterRegistry);
+    private final UUID first = UUID.randomUUID();
+    private final UUID second = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(buffer, "maxPending", 100L);
+    }
+
+    @Test
+    void flushWritesSummedViewsAndPublishesThem() {
+        buffer.record(first);
+        buffer.recordAll(List.of(first, second));
+
+        buffer.flush();
+
+        verify(feedRepository).incrementWatchCounts(Map.of(first, 2L, second, 1L));
+        verify(eventPublisher).publishEvent(FeedActivityEvent.views(first, 2));
+        verify(eventPublisher).publishEvent(FeedActivityEvent.views(second, 1));
+    }
+
+    @Test
+    void flushSwapsThePendingViews() {
+        buffer.record(first);
+        buffer.flush();
+        buffer.flush();
+
+        buffer.record(second);
+        buffer.flush();
+
+        verify(feedRepository).incrementWatchCounts(Map.of(first, 1L));
+        verify(feedRepository).incrementWatchCounts(Map.of(second, 1L));
+        verify(feedRepository, times(2)).incrementWatchCounts(any());
+    }
+
+    @Test
+    void emptyFlushDoesNothing() {
+        buffer.flush();
+
+        verifyNoInteractions(feedRepository, eventPublisher);
+    }
+
+    @Test
+    void failedFlushRequeuesViews() {
+        doThrow(new DataAccessResourceFailureException("database is down"))
+                .when(feedRepository).incrementWatchCounts(Map.of(first, 1L));
+        buffer.record(first);
+
+        buffer.flush();
+
+        verify(eventPublisher, never()).publishEvent(any());
+
+        buffer.record(first);
+        buffer.record(second);
+        buffer.flush();
+
+        verify(feedRepository).incrementWatchCounts(Map.of(first, 2L, second, 1L));
+        verify(eventPublisher).publishEvent(FeedActivityEvent.views(first, 2));
+    }
+
+    @Test
+    void bufferStaysBoundedWhileDatabaseIsDown() {
+        ReflectionTestUtils.setField(buffer, "maxPending", 3L);
+        doThrow(new DataAccessResourceFailureException("database is down"))
+                .when(feedRepository).incrementWatchCounts(any());
+
+        buffer.recordAll(List.of(first, first, second));
+        buffer.recordAll(List.of(first, second));
+        buffer.flush();
+
+        verify(feedRepository, times(2)).incrementWatchCounts(Map.of(first, 2L, second, 1L));
+        assertThat(meterRegistry.get("feed.watch-count.dropped").counter().count()).isEqualTo(2);
+
+        doNothing().when(feedRepository).incrementWatchCounts(any());
+        buffer.flush();
+        buffer.record(second);
+        buffer.flush();
+
+        verify(feedRepository).incrementWatchCounts(Map.of(second, 1L));
+        verify(eventPublisher).publishEvent(FeedActivityEvent.views(first, 2));
+    }
+
+    @Test
+    void reachingMaxPendingFlushes() {
+        ReflectionTestUtils.setField(buffer, "maxPending", 3L);
+
+        buffer.recordAll(List.of(first, second));
+        verifyNoInteractions(feedRepository);
+
+        buffer.record(first);
+        verify(feedRepository).incrementWatchCounts(Map.of(first, 2L, second, 1L));
+    }
+
+    @Test
+    void shutdownFlushesPendingViews() {
+        buffer.record(first);
+
+        buffer.flushOnShutdown();
+
+        verify(feedRepository).incrementWatchCounts(Map.of(first, 1L));
+    }
+}